@@ -7,10 +7,21 @@ import de.erethon.daedalus.customentity.ModeledEntitiesClock;
 import de.erethon.daedalus.customentity.ModeledEntity;
 import de.erethon.daedalus.customentity.ModeledEntityEvents;
 import de.erethon.daedalus.customentity.PropEntity;
+import de.erethon.daedalus.customentity.core.ChunkChangeTracker;
+import de.erethon.daedalus.customentity.core.ContactPass;
+import de.erethon.daedalus.customentity.core.HitboxGrid;
+import de.erethon.daedalus.customentity.core.InteractionHitbox;
+import de.erethon.daedalus.customentity.core.ModeledEntityIndex;
 import de.erethon.daedalus.customentity.core.OBBHitDetection;
+import de.erethon.daedalus.customentity.core.PlayerSpatialIndex;
+import de.erethon.daedalus.customentity.core.SpawnQueue;
+import de.erethon.daedalus.customentity.core.ViewerRegistry;
+import de.erethon.daedalus.customentity.core.VisibilityCache;
 import de.erethon.daedalus.customentity.core.components.InteractionComponent;
+import de.erethon.daedalus.customentity.core.occlusion.OcclusionEngine;
 import de.erethon.daedalus.dataconverter.FileModelConverter;
 import de.erethon.daedalus.listeners.EntityTeleportEvent;
+import de.erethon.daedalus.packets.BoneItemCache;
 import de.erethon.daedalus.utils.DataMappings;
 import de.erethon.bedrock.chat.MessageUtil;
 import de.erethon.bedrock.plugin.EPlugin;
@@ -46,6 +57,11 @@ public final class Daedalus extends EPlugin implements Listener, CommandExecutor
         Bukkit.getPluginManager().registerEvents(new EntityTeleportEvent(), this);
         Bukkit.getPluginManager().registerEvents(new DynamicEntity.ModeledEntityEvents(), this);
         Bukkit.getPluginManager().registerEvents(new InteractionComponent.InteractionComponentEvents(), this);
+        Bukkit.getPluginManager().registerEvents(new ViewerRegistry(), this);
+        Bukkit.getPluginManager().registerEvents(new PlayerSpatialIndex.PlayerMovementEvents(), this);
+        Bukkit.getPluginManager().registerEvents(new ChunkChangeTracker(), this);
+        Bukkit.getPluginManager().registerEvents(new OcclusionEngine.OcclusionEvents(), this);
+        Bukkit.getPluginManager().registerEvents(new InteractionHitbox.InteractionHitboxEvents(), this);
         Bukkit.getPluginManager().registerEvents(this, this);
         OutputFolder.zipResourcePack();
 
@@ -53,6 +69,10 @@ public final class Daedalus extends EPlugin implements Listener, CommandExecutor
 
         PropEntity.onStartup();
         OBBHitDetection.startProjectileDetection();
+        PlayerSpatialIndex.start();
+        OcclusionEngine.start();
+        SpawnQueue.start();
+        ContactPass.start();
         getCommand("daedalus").setExecutor(this);
         // Generate Data Mappings, needs a Level to work with
         CraftWorld craftWorld = (CraftWorld) Bukkit.getWorlds().get(0);
@@ -65,6 +85,16 @@ public final class Daedalus extends EPlugin implements Listener, CommandExecutor
         ModeledEntity.shutdown();
         ModeledEntitiesClock.shutdown();
         OBBHitDetection.shutdown();
+        HitboxGrid.shutdown();
+        ModeledEntityIndex.shutdown();
+        ViewerRegistry.shutdown();
+        PlayerSpatialIndex.shutdown();
+        VisibilityCache.shutdown();
+        ChunkChangeTracker.shutdown();
+        OcclusionEngine.shutdown();
+        SpawnQueue.shutdown();
+        ContactPass.shutdown();
+        BoneItemCache.shutdown();
         Bukkit.getServer().getScheduler().cancelTasks(MetadataHandler.PLUGIN);
         HandlerList.unregisterAll(MetadataHandler.PLUGIN);
     }
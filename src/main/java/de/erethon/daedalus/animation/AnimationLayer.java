@@ -0,0 +1,103 @@
+package de.erethon.daedalus.animation;
+
+import javax.annotation.Nullable;
+
+/**
+ * An animation played on top of the base state of an entity, such as an attack on the upper body or a hit react.
+ * A layer only moves the bones in its mask and fades in and out by its own weight.
+ */
+public class AnimationLayer {
+
+    public enum Mode {
+        // Replaces the pose below it, by the weight of the layer
+        OVERRIDE,
+        // Adds its rotations and translations to the pose below it and multiplies its scale, for animations made as offsets
+        ADDITIVE
+    }
+
+    private final String name;
+    private final Animation animation;
+    private final Mode mode;
+    private final boolean loop;
+    private final boolean[] mask;
+    private final int fadeInTicks;
+    private final int fadeOutTicks;
+    private float weight;
+    private float fade;
+    private boolean fadingOut = false;
+
+    /**
+     * @param mask Whether each bone is moved by the layer, by bone ordinal. Null for every bone
+     */
+    public AnimationLayer(String name, Animation animation, Mode mode, float weight, boolean loop,
+                          int fadeInTicks, int fadeOutTicks, @Nullable boolean[] mask) {
+        this.name = name;
+        this.animation = animation;
+        this.mode = mode;
+        this.weight = Math.max(0, Math.min(1, weight));
+        this.loop = loop;
+        this.fadeInTicks = fadeInTicks;
+        this.fadeOutTicks = fadeOutTicks;
+        this.mask = mask;
+        // Layers without a fade in show at full weight from their first tick
+        this.fade = fadeInTicks > 0 ? 0 : 1;
+    }
+
+    /**
+     * Advances the fade, non looping layers start fading out early enough to be gone when they end.
+     * Layers shorter than their fades still fade in fully first, then fade out holding their last frame.
+     */
+    void tickFade() {
+        int duration = animation.getAnimationBlueprint().getDuration();
+        if (!loop && animation.getCounter() >= Math.max(fadeInTicks, duration - fadeOutTicks)) fadingOut = true;
+        if (fadingOut) fade = fadeOutTicks > 0 ? Math.max(0, fade - 1f / fadeOutTicks) : 0;
+        else fade = fadeInTicks > 0 ? Math.min(1, fade + 1f / fadeInTicks) : 1;
+    }
+
+    /**
+     * Fades the layer out, it is removed once it is gone
+     */
+    void stop() {
+        fadingOut = true;
+    }
+
+    public boolean isFinished() {
+        return fadingOut && fade <= 0;
+    }
+
+    /**
+     * Weight the layer is blended with this tick, the layer weight times how far it has faded in
+     */
+    public float getEffectiveWeight() {
+        return weight * fade;
+    }
+
+    void setWeight(float weight) {
+        this.weight = Math.max(0, Math.min(1, weight));
+    }
+
+    public float getWeight() {
+        return weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Animation getAnimation() {
+        return animation;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isLoop() {
+        return loop;
+    }
+
+    @Nullable
+    public boolean[] getMask() {
+        return mask;
+    }
+}
@@ -1,45 +1,88 @@
 package de.erethon.daedalus.animation;
 
 import de.erethon.bedrock.chat.MessageUtil;
+import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.customentity.ModeledEntity;
-import de.erethon.daedalus.dataconverter.AnimationFrame;
+import de.erethon.daedalus.customentity.core.Skeleton;
+import de.erethon.daedalus.customentity.core.Bone;
+import de.erethon.daedalus.dataconverter.AnimationBlueprint;
+import de.erethon.daedalus.dataconverter.BoneBlueprint;
 import de.erethon.daedalus.dataconverter.AnimationsBlueprint;
 
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class AnimationManager {
     private final Map<AnimationStateType, IAnimState> states = new EnumMap<>(AnimationStateType.class);
     private final ModeledEntity modeledEntity;
     private final Animations animations;
+    // The states, layers and crossfade are only touched by the thread ticking the entity, the API queues its changes
+    // in commands instead
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
     private IAnimState current;
     private IAnimState nextQueued;
     private AnimationStateType lastCommitted;
+    private final List<AnimationLayer> layers = new ArrayList<>();
+    // Animation the base state is crossfading away from, null when no crossfade is running
+    private Animation fadingFrom = null;
+    private boolean fadingFromLoop;
+    private int crossfadeTicks;
+    private int crossfadeTick;
+    // Blended pose by bone ordinal and channel, only allocated once the entity blends for the first time
+    private float[] pose = null;
 
     public AnimationManager(ModeledEntity modeledEntity, AnimationsBlueprint bp) {
         this.modeledEntity = modeledEntity;
-        this.animations = new Animations(bp, modeledEntity);
-
-        // register states
-        if (animations.getAnimations().get("idle") != null)
-            states.put(AnimationStateType.IDLE, new IdleState(modeledEntity, new AnimationStateConfig(animations.getAnimations().get("idle"), true)));
-        if (animations.getAnimations().get("walk") != null)
-            states.put(AnimationStateType.WALK, new WalkState(modeledEntity, new AnimationStateConfig(animations.getAnimations().get("walk"), true)));
-        if (animations.getAnimations().get("attack") != null)
-            states.put(AnimationStateType.ATTACK, new AttackState(new AnimationStateConfig(animations.getAnimations().get("attack"), false)));
-        if (animations.getAnimations().get("death") != null)
-            states.put(AnimationStateType.DEATH, new DeathState(modeledEntity, new AnimationStateConfig(animations.getAnimations().get("death"), false)));
-        if (animations.getAnimations().get("spawn") != null)
-            states.put(AnimationStateType.SPAWN, new SpawnState(new AnimationStateConfig(animations.getAnimations().get("spawn"), false)));
+        this.animations = new Animations(bp);
         lastCommitted = null;
 
         // start with spawn or idle
-        current = states.get(AnimationStateType.SPAWN) != null
-                ? states.get(AnimationStateType.SPAWN)
-                : states.get(AnimationStateType.IDLE);
+        current = getState(AnimationStateType.SPAWN) != null
+                ? getState(AnimationStateType.SPAWN)
+                : getState(AnimationStateType.IDLE);
         if (current != null) current.enter();
     }
 
+    /**
+     * Gets a built-in state, states are only created once they are first needed. Only called from the constructor and
+     * the thread ticking the entity.
+     *
+     * @return the state, or null if the model has no animation for it
+     */
+    private IAnimState getState(AnimationStateType type) {
+        if (type == null) return null;
+        IAnimState state = states.get(type);
+        if (state != null || states.containsKey(type)) return state;
+        state = switch (type) {
+            case IDLE -> animations.hasAnimation("idle") ? new IdleState(modeledEntity, new AnimationStateConfig(animations.getAnimation("idle"), true)) : null;
+            case WALK -> animations.hasAnimation("walk") ? new WalkState(modeledEntity, new AnimationStateConfig(animations.getAnimation("walk"), true)) : null;
+            case ATTACK -> animations.hasAnimation("attack") ? new AttackState(new AnimationStateConfig(animations.getAnimation("attack"), false)) : null;
+            case DEATH -> animations.hasAnimation("death") ? new DeathState(modeledEntity, new AnimationStateConfig(animations.getAnimation("death"), false)) : null;
+            case SPAWN -> animations.hasAnimation("spawn") ? new SpawnState(new AnimationStateConfig(animations.getAnimation("spawn"), false)) : null;
+            default -> null;
+        };
+        // Missing states are remembered too, so they aren't looked up again
+        states.put(type, state);
+        return state;
+    }
+
+    /**
+     * @return the name of the animation a built-in state plays, or null if the type isn't a built-in state
+     */
+    private static String getBuiltInAnimationName(AnimationStateType type) {
+        if (type == null) return null;
+        return switch (type) {
+            case IDLE, WALK, ATTACK, DEATH, SPAWN -> type.name().toLowerCase();
+            default -> null;
+        };
+    }
+
     private void transitionTo(IAnimState target) {
         if (target == null || target == current) return;
         if (current == null) {
@@ -52,14 +95,25 @@ public class AnimationManager {
         if (!(current instanceof CustomAnimationState)) {
             lastCommitted = current.getType();
         }
+        Animation previous = current.getAnimation();
+        boolean previousLoop = current.isLoop();
         current = target;
         current.enter();
+        // The new state restarts its animation, so it can't fade from itself
+        if (DefaultConfig.animationCrossfadeTicks > 0 && previous != current.getAnimation()) {
+            fadingFrom = previous;
+            fadingFromLoop = previousLoop;
+            crossfadeTicks = DefaultConfig.animationCrossfadeTicks;
+            crossfadeTick = 0;
+        } else {
+            fadingFrom = null;
+        }
         MessageUtil.log("Transitioning to " + current.getClass().getSimpleName());
     }
 
     /**
      * Play either a built-in state (idle, walk, attack, death, spawn)
-     * or a data-driven animation by name.
+     * or a data-driven animation by name. The change is applied at the start of the next tick.
      *
      * @param name           name of the animation/state (case-insensitive)
      * @param blendAnimation if true, queue it behind the current; if false, interrupt immediately
@@ -74,40 +128,131 @@ public class AnimationManager {
         } catch (IllegalArgumentException ignored) {
         }
 
-        if (st != null && states.containsKey(st)) {
-            IAnimState builtIn = states.get(st);
-            if (blendAnimation) nextQueued = builtIn;
-            else transitionTo(builtIn);
+        String builtInName = getBuiltInAnimationName(st);
+        if (builtInName != null && animations.hasAnimation(builtInName)) {
+            AnimationStateType builtInType = st;
+            commands.add(() -> {
+                IAnimState builtIn = getState(builtInType);
+                if (blendAnimation) nextQueued = builtIn;
+                else transitionTo(builtIn);
+            });
             return true;
         }
 
         // 2) fallback to custom
-        Animation anim = animations.getAnimations().get(name);
+        Animation anim = animations.getAnimation(name);
         if (anim == null) {
             MessageUtil.log("Failed to play animation: " + name + " - animation not found.");
             return false;
         }
 
-        CustomAnimationState custom = new CustomAnimationState(
-                modeledEntity,
-                anim,
-                loop,
-                lastCommitted != null ? lastCommitted : AnimationStateType.IDLE
-        );
+        commands.add(() -> {
+            CustomAnimationState custom = new CustomAnimationState(
+                    modeledEntity,
+                    anim,
+                    loop,
+                    lastCommitted != null ? lastCommitted : AnimationStateType.IDLE
+            );
 
-        if (blendAnimation) nextQueued = custom;
-        else transitionTo(custom);
+            if (blendAnimation) nextQueued = custom;
+            else transitionTo(custom);
+        });
         MessageUtil.log("Playing animation: " + name);
         return true;
     }
 
 
+    /**
+     * Plays an animation on a layer over the base state. A layer with the same name is replaced.
+     * Like {@link #play(String, boolean, boolean)}, the layer is added at the start of the next tick.
+     *
+     * @param layerName     name of the layer, used to stop it or change its weight
+     * @param animationName name of the animation
+     * @param mode          whether the layer overrides or adds to the pose below it
+     * @param weight        how strongly the layer is blended, from 0 to 1
+     * @param loop          whether the layer loops, non looping layers remove themselves once they end
+     * @param fadeInTicks   ticks the layer fades in over
+     * @param fadeOutTicks  ticks the layer fades out over
+     * @param maskBones     names of the bones the layer moves, their child bones included. Null for every bone
+     * @return true if the animation exists and the layer was added
+     */
+    public boolean playLayer(String layerName, String animationName, AnimationLayer.Mode mode, float weight, boolean loop,
+                             int fadeInTicks, int fadeOutTicks, @Nullable Collection<String> maskBones) {
+        if (!animations.hasAnimation(animationName)) {
+            MessageUtil.log("Failed to play animation layer: " + animationName + " - animation not found.");
+            return false;
+        }
+        // Layers keep their own counter, so the same animation can run as the base and as a layer
+        Animation animation = animations.createAnimation(animationName);
+        AnimationLayer layer = new AnimationLayer(layerName, animation, mode, weight, loop, fadeInTicks, fadeOutTicks, buildMask(maskBones));
+        commands.add(() -> {
+            for (int i = 0; i < layers.size(); i++) {
+                if (layers.get(i).getName().equals(layerName)) {
+                    layers.set(i, layer);
+                    return;
+                }
+            }
+            layers.add(layer);
+        });
+        return true;
+    }
+
+    /**
+     * Fades a layer out, it is removed once it is gone
+     */
+    public void stopLayer(String layerName) {
+        commands.add(() -> {
+            AnimationLayer layer = getLayer(layerName);
+            if (layer != null) layer.stop();
+        });
+    }
+
+    public void setLayerWeight(String layerName, float weight) {
+        commands.add(() -> {
+            AnimationLayer layer = getLayer(layerName);
+            if (layer != null) layer.setWeight(weight);
+        });
+    }
+
+    @Nullable
+    private AnimationLayer getLayer(String layerName) {
+        for (AnimationLayer layer : layers)
+            if (layer.getName().equals(layerName)) return layer;
+        return null;
+    }
+
+    private boolean[] buildMask(@Nullable Collection<String> maskBones) {
+        if (maskBones == null) return null;
+        Skeleton skeleton = modeledEntity.getSkeleton();
+        boolean[] mask = new boolean[modeledEntity.getSkeletonBlueprint().getBoneCount()];
+        for (String boneName : maskBones) {
+            BoneBlueprint boneBlueprint = modeledEntity.getSkeletonBlueprint().getBoneMap().get(boneName);
+            if (boneBlueprint == null) {
+                MessageUtil.log("Animation layer mask bone " + boneName + " does not exist, skipping it.");
+                continue;
+            }
+            Bone bone = skeleton.getBone(boneBlueprint.getOrdinal());
+            if (bone != null) addToMask(bone, mask);
+        }
+        return mask;
+    }
+
+    private static void addToMask(Bone bone, boolean[] mask) {
+        mask[bone.getBoneBlueprint().getOrdinal()] = true;
+        for (Bone child : bone.getBoneChildren()) addToMask(child, mask);
+    }
+
     public void stop() {
-        current.exit();
-        transitionTo(states.get(AnimationStateType.IDLE));
+        commands.add(() -> {
+            current.exit();
+            transitionTo(getState(AnimationStateType.IDLE));
+        });
     }
 
     public void tick() {
+        Runnable command;
+        while ((command = commands.poll()) != null) command.run();
+
         if (current == null) return; //todo: this is probably not the best solution as it would block playing animations if there's no idle probably
 
         // 1) let the state update its own “finished” logic
@@ -122,13 +267,17 @@ public class AnimationManager {
             nextQueued = null;
         } else {
             current.nextState().ifPresent(stateType -> {
-                IAnimState next = states.get(stateType);
+                IAnimState next = getState(stateType);
                 transitionTo(next);
             });
         }
     }
 
     private void renderCurrentFrame() {
+        if (fadingFrom != null || !layers.isEmpty()) {
+            renderBlendedFrame();
+            return;
+        }
         Animation anim = current.getAnimation();
         boolean loop = current.isLoop();
         int duration = anim.getAnimationBlueprint().getDuration();
@@ -149,26 +298,131 @@ public class AnimationManager {
             frame = (int) Math.min(counter, duration - 1);
         }
 
-        // apply rotations/translations/scales in one pass
-        anim.getAnimationFrames().forEach((part, frames) -> {
-            if (frames == null || frames.length <= frame) {
-                // reset to default
-                part.updateAnimationRotation(0, 0, 0);
-                part.updateAnimationTranslation(0, 0, 0);
-                part.updateAnimationScale(1f);
-            } else {
-                AnimationFrame f = frames[frame];
-                part.updateAnimationRotation(f.xRotation, f.yRotation, f.zRotation);
-                part.updateAnimationTranslation(f.xPosition, f.yPosition, f.zPosition);
-                part.updateAnimationScale(f.scale != null ? f.scale : 1f);
+        // at a reduced rate only the sampled frames are applied, and the pose sent is the one the client should reach
+        // by the next sample
+        Skeleton skeleton = modeledEntity.getSkeleton();
+        int interpolationTicks = 1;
+        if (DefaultConfig.reducedRateAnimations && !skeleton.isMoving()) {
+            int step = anim.getAnimationBlueprint().getSampleStep(frame);
+            if (step == 0) {
+                anim.incrementCounter();
+                return;
             }
-        });
+            interpolationTicks = step;
+            frame = loop ? (frame + step) % duration : Math.min(frame + step, duration - 1);
+        }
+        skeleton.markPoseDirty(interpolationTicks);
+
+        // apply rotations/translations/scales in one pass, the frame's bones are next to each other in the array
+        AnimationBlueprint blueprint = anim.getAnimationBlueprint();
+        float[] frames = blueprint.getFrames();
+        int offset = blueprint.getFrameOffset(frame, 0);
+        for (int slot = 0; slot < blueprint.getSlotCount(); slot++, offset += AnimationBlueprint.CHANNELS) {
+            Bone part = skeleton.getBone(blueprint.getSlotOrdinal(slot));
+            if (part == null) continue;
+            part.updateAnimationRotation(frames[offset + AnimationBlueprint.X_ROTATION], frames[offset + AnimationBlueprint.Y_ROTATION], frames[offset + AnimationBlueprint.Z_ROTATION]);
+            part.updateAnimationTranslation(frames[offset + AnimationBlueprint.X_POSITION], frames[offset + AnimationBlueprint.Y_POSITION], frames[offset + AnimationBlueprint.Z_POSITION]);
+            part.updateAnimationScale(AnimationBlueprint.scaleOf(frames[offset + AnimationBlueprint.SCALE]));
+        }
+        // reset the bones the animation doesn't touch to default
+        for (int ordinal : blueprint.getRestOrdinals()) {
+            Bone part = skeleton.getBone(ordinal);
+            if (part == null) continue;
+            part.updateAnimationRotation(0, 0, 0);
+            part.updateAnimationTranslation(0, 0, 0);
+            part.updateAnimationScale(1f);
+        }
 
         // advance the counter for next tick
         anim.incrementCounter();
     }
 
+    /**
+     * Blends the base state, the animation it crossfades from and every layer into the pose, in one pass over each
+     * animation's frame. Blended poses are sent every tick, as the client can't interpolate between them reliably.
+     */
+    private void renderBlendedFrame() {
+        Skeleton skeleton = modeledEntity.getSkeleton();
+        int boneCount = modeledEntity.getSkeletonBlueprint().getBoneCount();
+        if (pose == null || pose.length != boneCount * AnimationBlueprint.CHANNELS)
+            pose = new float[boneCount * AnimationBlueprint.CHANNELS];
+        for (int i = 0; i < pose.length; i += AnimationBlueprint.CHANNELS) {
+            for (int channel = 0; channel < AnimationBlueprint.SCALE; channel++) pose[i + channel] = 0;
+            pose[i + AnimationBlueprint.SCALE] = 1;
+        }
+
+        Animation base = current.getAnimation();
+        if (fadingFrom != null) {
+            blendInto(fadingFrom, fadingFromLoop, 1, null, false, true);
+            fadingFrom.incrementCounter();
+            crossfadeTick++;
+            blendInto(base, current.isLoop(), Math.min(1, crossfadeTick / (float) crossfadeTicks), null, false, true);
+            if (crossfadeTick >= crossfadeTicks) fadingFrom = null;
+        } else {
+            blendInto(base, current.isLoop(), 1, null, false, true);
+        }
+        base.incrementCounter();
+
+        for (int i = 0; i < layers.size(); i++) {
+            AnimationLayer layer = layers.get(i);
+            layer.tickFade();
+            if (layer.isFinished()) {
+                layers.remove(i--);
+                continue;
+            }
+            float weight = layer.getEffectiveWeight();
+            if (weight > 0)
+                blendInto(layer.getAnimation(), layer.isLoop(), weight, layer.getMask(), layer.getMode() == AnimationLayer.Mode.ADDITIVE, false);
+            layer.getAnimation().incrementCounter();
+        }
+
+        for (int ordinal = 0, offset = 0; ordinal < boneCount; ordinal++, offset += AnimationBlueprint.CHANNELS) {
+            Bone part = skeleton.getBone(ordinal);
+            if (part == null) continue;
+            part.updateAnimationRotation(pose[offset + AnimationBlueprint.X_ROTATION], pose[offset + AnimationBlueprint.Y_ROTATION], pose[offset + AnimationBlueprint.Z_ROTATION]);
+            part.updateAnimationTranslation(pose[offset + AnimationBlueprint.X_POSITION], pose[offset + AnimationBlueprint.Y_POSITION], pose[offset + AnimationBlueprint.Z_POSITION]);
+            part.updateAnimationScale(pose[offset + AnimationBlueprint.SCALE]);
+        }
+        skeleton.markPoseDirty(1);
+    }
+
+    /**
+     * Blends the current frame of an animation into the pose
+     *
+     * @param mask      bones to blend by ordinal, null for every bone
+     * @param additive  adds the frame to the pose instead of interpolating towards it
+     * @param blendRest also blends the bones the animation doesn't touch towards the rest pose
+     */
+    private void blendInto(Animation animation, boolean loop, float weight, @Nullable boolean[] mask, boolean additive, boolean blendRest) {
+        AnimationBlueprint blueprint = animation.getAnimationBlueprint();
+        int duration = blueprint.getDuration();
+        if (duration == 0) return;
+        int counter = animation.getCounter();
+        int frame = loop ? counter % duration : Math.min(counter, duration - 1);
+        float[] frames = blueprint.getFrames();
+        int offset = blueprint.getFrameOffset(frame, 0);
+        for (int slot = 0; slot < blueprint.getSlotCount(); slot++, offset += AnimationBlueprint.CHANNELS) {
+            int ordinal = blueprint.getSlotOrdinal(slot);
+            if (mask != null && !mask[ordinal]) continue;
+            int target = ordinal * AnimationBlueprint.CHANNELS;
+            for (int channel = 0; channel < AnimationBlueprint.SCALE; channel++) {
+                float value = frames[offset + channel];
+                pose[target + channel] += additive ? value * weight : (value - pose[target + channel]) * weight;
+            }
+            float scale = AnimationBlueprint.scaleOf(frames[offset + AnimationBlueprint.SCALE]);
+            if (additive) pose[target + AnimationBlueprint.SCALE] *= 1 + (scale - 1) * weight;
+            else pose[target + AnimationBlueprint.SCALE] += (scale - pose[target + AnimationBlueprint.SCALE]) * weight;
+        }
+        if (!blendRest) return;
+        for (int ordinal : blueprint.getRestOrdinals()) {
+            if (mask != null && !mask[ordinal]) continue;
+            int target = ordinal * AnimationBlueprint.CHANNELS;
+            for (int channel = 0; channel < AnimationBlueprint.SCALE; channel++) pose[target + channel] -= pose[target + channel] * weight;
+            pose[target + AnimationBlueprint.SCALE] += (1 - pose[target + AnimationBlueprint.SCALE]) * weight;
+        }
+    }
+
     public boolean hasAnimation(String animationName) {
-        return animations.getAnimations().containsKey(animationName);
+        return animations.hasAnimation(animationName);
     }
 }
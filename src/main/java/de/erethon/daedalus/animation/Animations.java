@@ -1,24 +1,44 @@
 package de.erethon.daedalus.animation;
 
-import de.erethon.bedrock.chat.MessageUtil;
-import de.erethon.daedalus.customentity.ModeledEntity;
+import de.erethon.daedalus.dataconverter.AnimationBlueprint;
 import de.erethon.daedalus.dataconverter.AnimationsBlueprint;
 
-import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Animations of an entity, each one is only created the first time it is played. Animations are looked up from the
+ * API and from the thread ticking the entity, both get the same instance.
+ */
 public class Animations {
-    private final HashMap<String, Animation> animations = new HashMap<>();
+    private final Map<String, Animation> animations = new ConcurrentHashMap<>();
     private final AnimationsBlueprint animationBlueprint;
-    public Animations(AnimationsBlueprint animationsBlueprint, ModeledEntity modeledEntity){
+
+    public Animations(AnimationsBlueprint animationsBlueprint) {
         this.animationBlueprint = animationsBlueprint;
-        animationsBlueprint.getAnimations().forEach((key, value) -> animations.put(key, new Animation(value, modeledEntity)));
     }
 
+    /**
+     * @return the animation, or null if the model doesn't have it
+     */
     public Animation getAnimation(String animationName) {
-        return animations.get(animationName);
+        return animations.computeIfAbsent(animationName, name -> {
+            AnimationBlueprint blueprint = animationBlueprint.getAnimations().get(name);
+            return blueprint == null ? null : new Animation(blueprint);
+        });
+    }
+
+    /**
+     * Creates a separate instance of an animation, for playing it alongside the shared one
+     *
+     * @return the animation, or null if the model doesn't have it
+     */
+    public Animation createAnimation(String animationName) {
+        AnimationBlueprint blueprint = animationBlueprint.getAnimations().get(animationName);
+        return blueprint == null ? null : new Animation(blueprint);
     }
 
-    public HashMap<String, Animation> getAnimations() {
-        return animations;
+    public boolean hasAnimation(String animationName) {
+        return animationBlueprint.getAnimations().containsKey(animationName);
     }
 }
@@ -0,0 +1,310 @@
+package de.erethon.daedalus.api;
+
+import de.erethon.daedalus.customentity.ModeledEntity;
+import de.erethon.daedalus.customentity.core.HitboxGrid;
+import de.erethon.daedalus.customentity.core.OrientedBoundingBox;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.util.Vector;
+import org.joml.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs many ray, sphere and cone queries against the hitboxes of the models in a world at once.
+ * Queries are stored in primitive arrays and only look at the models in the hitbox grid cells they cover. The query
+ * and result buffers are kept between runs, so a batch that is cleared and refilled every tick doesn't allocate once
+ * it has grown to its working size.
+ * <p>
+ * Rays report the closest model they hit, tested against the bone hitboxes if the model has them. Spheres and cones
+ * report every model they touch, tested against the model hitbox. A batch isn't thread safe, use one per thread.
+ */
+public class ModelQueryBatch {
+
+    private static final int RAY_STRIDE = 7;
+    private static final int SPHERE_STRIDE = 4;
+    private static final int CONE_STRIDE = 8;
+
+    private final World world;
+
+    private double[] rays = new double[RAY_STRIDE * 16];
+    private int rayCount = 0;
+    private double[] spheres = new double[SPHERE_STRIDE * 16];
+    private int sphereCount = 0;
+    private double[] cones = new double[CONE_STRIDE * 16];
+    private int coneCount = 0;
+
+    private ModeledEntity[] rayHits = new ModeledEntity[16];
+    private double[] rayHitDistances = new double[16];
+    // Hits of sphere i are shapeHits[sphereHitOffsets[i]] until shapeHits[sphereHitOffsets[i + 1]], cones work the same
+    private int[] sphereHitOffsets = new int[17];
+    private int[] coneHitOffsets = new int[17];
+    private ModeledEntity[] shapeHits = new ModeledEntity[64];
+    private int shapeHitCount = 0;
+
+    private final List<ModeledEntity> candidates = new ArrayList<>();
+    private final Set<ModeledEntity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    public ModelQueryBatch(World world) {
+        this.world = world;
+    }
+
+    /**
+     * Removes all queries and results, keeping the buffers for the next run
+     */
+    public void clear() {
+        Arrays.fill(rayHits, 0, rayCount, null);
+        Arrays.fill(shapeHits, 0, shapeHitCount, null);
+        rayCount = 0;
+        sphereCount = 0;
+        coneCount = 0;
+        shapeHitCount = 0;
+    }
+
+    /**
+     * Adds a ray
+     *
+     * @param directionX  Direction of the ray, has to be normalized
+     * @param maxDistance How far the ray reaches, in blocks
+     * @return the index of the ray, used to read its result
+     */
+    public int addRay(double originX, double originY, double originZ,
+                      double directionX, double directionY, double directionZ, double maxDistance) {
+        rays = ensureCapacity(rays, (rayCount + 1) * RAY_STRIDE);
+        int base = rayCount * RAY_STRIDE;
+        rays[base] = originX;
+        rays[base + 1] = originY;
+        rays[base + 2] = originZ;
+        rays[base + 3] = directionX;
+        rays[base + 4] = directionY;
+        rays[base + 5] = directionZ;
+        rays[base + 6] = maxDistance;
+        return rayCount++;
+    }
+
+    /**
+     * Adds a ray along the direction of a location, such as a player's eye location
+     *
+     * @return the index of the ray, used to read its result
+     */
+    public int addRay(Location location, double maxDistance) {
+        Vector direction = location.getDirection();
+        return addRay(location.getX(), location.getY(), location.getZ(),
+                direction.getX(), direction.getY(), direction.getZ(), maxDistance);
+    }
+
+    /**
+     * Adds a sphere
+     *
+     * @return the index of the sphere, used to read its results
+     */
+    public int addSphere(double x, double y, double z, double radius) {
+        spheres = ensureCapacity(spheres, (sphereCount + 1) * SPHERE_STRIDE);
+        int base = sphereCount * SPHERE_STRIDE;
+        spheres[base] = x;
+        spheres[base + 1] = y;
+        spheres[base + 2] = z;
+        spheres[base + 3] = radius;
+        return sphereCount++;
+    }
+
+    /**
+     * Adds a cone, such as the area of a breath attack
+     *
+     * @param directionX Direction of the cone axis, has to be normalized
+     * @param length     Length of the cone along its axis, in blocks
+     * @param angle      Angle between the axis and the side of the cone, in degrees
+     * @return the index of the cone, used to read its results
+     */
+    public int addCone(double apexX, double apexY, double apexZ,
+                       double directionX, double directionY, double directionZ, double length, double angle) {
+        cones = ensureCapacity(cones, (coneCount + 1) * CONE_STRIDE);
+        int base = coneCount * CONE_STRIDE;
+        cones[base] = apexX;
+        cones[base + 1] = apexY;
+        cones[base + 2] = apexZ;
+        cones[base + 3] = directionX;
+        cones[base + 4] = directionY;
+        cones[base + 5] = directionZ;
+        cones[base + 6] = length;
+        cones[base + 7] = Math.toRadians(angle);
+        return coneCount++;
+    }
+
+    /**
+     * Runs every query added since the last clear, results are available until the next clear
+     */
+    public void run() {
+        shapeHitCount = 0;
+        runRays();
+        runSpheres();
+        runCones();
+    }
+
+    private void runRays() {
+        if (rayHits.length < rayCount) {
+            rayHits = new ModeledEntity[Math.max(rayCount, rayHits.length * 2)];
+            rayHitDistances = new double[rayHits.length];
+        }
+        for (int i = 0; i < rayCount; i++) {
+            int base = i * RAY_STRIDE;
+            double originX = rays[base], originY = rays[base + 1], originZ = rays[base + 2];
+            double directionX = rays[base + 3], directionY = rays[base + 4], directionZ = rays[base + 5];
+            double maxDistance = rays[base + 6];
+            collectCandidatesAlongRay(originX, originZ, directionX, directionZ, maxDistance);
+
+            ModeledEntity closest = null;
+            double closestDistance = maxDistance;
+            for (int j = 0; j < candidates.size(); j++) {
+                ModeledEntity entity = candidates.get(j);
+                if (entity.isRemoved()) continue;
+                double distance = entity.getHitboxComponent().rayIntersection(
+                        originX, originY, originZ, directionX, directionY, directionZ, maxDistance);
+                if (distance > 0 && distance < closestDistance) {
+                    closest = entity;
+                    closestDistance = distance;
+                }
+            }
+            rayHits[i] = closest;
+            rayHitDistances[i] = closest == null ? -1 : closestDistance;
+        }
+    }
+
+    private void runSpheres() {
+        sphereHitOffsets = ensureCapacity(sphereHitOffsets, sphereCount + 1);
+        for (int i = 0; i < sphereCount; i++) {
+            int base = i * SPHERE_STRIDE;
+            double x = spheres[base], y = spheres[base + 1], z = spheres[base + 2], radius = spheres[base + 3];
+            sphereHitOffsets[i] = shapeHitCount;
+            collectCandidatesInArea(x - radius, z - radius, x + radius, z + radius);
+            for (int j = 0; j < candidates.size(); j++) {
+                ModeledEntity entity = candidates.get(j);
+                if (entity.isRemoved()) continue;
+                if (entity.getHitboxComponent().getObbHitbox().intersectsSphere(x, y, z, radius)) addShapeHit(entity);
+            }
+        }
+        sphereHitOffsets[sphereCount] = shapeHitCount;
+    }
+
+    private void runCones() {
+        coneHitOffsets = ensureCapacity(coneHitOffsets, coneCount + 1);
+        for (int i = 0; i < coneCount; i++) {
+            int base = i * CONE_STRIDE;
+            double apexX = cones[base], apexY = cones[base + 1], apexZ = cones[base + 2];
+            double directionX = cones[base + 3], directionY = cones[base + 4], directionZ = cones[base + 5];
+            double length = cones[base + 6], angle = cones[base + 7];
+            double sin = Math.sin(angle);
+            double cos = Math.cos(angle);
+            coneHitOffsets[i] = shapeHitCount;
+
+            // The cone fits in the box around its apex and its base disc
+            double baseRadius = length * Math.tan(Math.min(angle, Math.toRadians(89)));
+            double endX = apexX + directionX * length;
+            double endZ = apexZ + directionZ * length;
+            collectCandidatesInArea(Math.min(apexX, endX - baseRadius), Math.min(apexZ, endZ - baseRadius),
+                    Math.max(apexX, endX + baseRadius), Math.max(apexZ, endZ + baseRadius));
+
+            for (int j = 0; j < candidates.size(); j++) {
+                ModeledEntity entity = candidates.get(j);
+                if (entity.isRemoved()) continue;
+                // Cones are tested against the sphere around the hitbox
+                OrientedBoundingBox obb = entity.getHitboxComponent().getObbHitbox();
+                Vector3d center = obb.getCenter();
+                double radius = obb.getHalfExtents().length();
+                if (coneTouchesSphere(apexX, apexY, apexZ, directionX, directionY, directionZ, length, sin, cos,
+                        center.x, center.y, center.z, radius)) addShapeHit(entity);
+            }
+        }
+        coneHitOffsets[coneCount] = shapeHitCount;
+    }
+
+    private static boolean coneTouchesSphere(double apexX, double apexY, double apexZ,
+                                             double directionX, double directionY, double directionZ,
+                                             double length, double sin, double cos,
+                                             double x, double y, double z, double radius) {
+        double relativeX = x - apexX;
+        double relativeY = y - apexY;
+        double relativeZ = z - apexZ;
+        double distanceSquared = relativeX * relativeX + relativeY * relativeY + relativeZ * relativeZ;
+        if (distanceSquared <= radius * radius) return true;
+        double along = relativeX * directionX + relativeY * directionY + relativeZ * directionZ;
+        if (along < 0 || along - radius > length) return false;
+        double fromAxis = Math.sqrt(Math.max(distanceSquared - along * along, 0));
+        // Distance from the sphere center to the side of the cone
+        return fromAxis * cos - along * sin <= radius;
+    }
+
+    private void collectCandidatesAlongRay(double originX, double originZ, double directionX, double directionZ, double maxDistance) {
+        candidates.clear();
+        seen.clear();
+        HitboxGrid.collectEntitiesAlongRay(world, originX, originZ, directionX, directionZ, maxDistance, candidates, seen);
+    }
+
+    private void collectCandidatesInArea(double minX, double minZ, double maxX, double maxZ) {
+        candidates.clear();
+        seen.clear();
+        HitboxGrid.collectEntitiesInArea(world, minX, minZ, maxX, maxZ, candidates, seen);
+    }
+
+    private void addShapeHit(ModeledEntity entity) {
+        if (shapeHitCount == shapeHits.length) shapeHits = Arrays.copyOf(shapeHits, shapeHits.length * 2);
+        shapeHits[shapeHitCount++] = entity;
+    }
+
+    private static double[] ensureCapacity(double[] array, int size) {
+        return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    private static int[] ensureCapacity(int[] array, int size) {
+        return array.length >= size ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    // Results
+
+    public int getRayCount() {
+        return rayCount;
+    }
+
+    /**
+     * @return the closest model hit by the ray, or null if it hit nothing
+     */
+    public ModeledEntity getRayHit(int ray) {
+        return rayHits[ray];
+    }
+
+    /**
+     * @return the distance to the closest hit of the ray, or -1 if it hit nothing
+     */
+    public double getRayHitDistance(int ray) {
+        return rayHitDistances[ray];
+    }
+
+    public int getSphereCount() {
+        return sphereCount;
+    }
+
+    public int getSphereHitCount(int sphere) {
+        return sphereHitOffsets[sphere + 1] - sphereHitOffsets[sphere];
+    }
+
+    public ModeledEntity getSphereHit(int sphere, int hit) {
+        return shapeHits[sphereHitOffsets[sphere] + hit];
+    }
+
+    public int getConeCount() {
+        return coneCount;
+    }
+
+    public int getConeHitCount(int cone) {
+        return coneHitOffsets[cone + 1] - coneHitOffsets[cone];
+    }
+
+    public ModeledEntity getConeHit(int cone, int hit) {
+        return shapeHits[coneHitOffsets[cone] + hit];
+    }
+}
@@ -6,6 +6,28 @@ public class DefaultConfig {
     public static int maxInteractionAndAttackDistanceForLivingEntities;
     public static int maxInteractionAndAttackDistanceForProps;
     public static boolean sendCustomModelsToBedrockClients;
+    // Sends animation poses only every few ticks where the motion is close to linear and lets the client interpolate
+    public static boolean reducedRateAnimations = true;
+    public static int maxAnimationSampleStep = 4;
+    // Ticks the base animation of a model crossfades over when it switches state. 0 snaps to the new animation
+    public static int animationCrossfadeTicks = 4;
+    // Models behind a player are only spawned once they turn towards them, in degrees
+    public static boolean frustumCulling = true;
+    public static double frustumFov = 110;
+    public static double frustumMargin = 20;
+    // Spawned models are kept until this many blocks past the view distance, or until they were out of view this long
+    public static int viewDistanceHysteresis = 8;
+    public static int outOfFrustumDespawnSeconds = 5;
+    // Bone entities spawned per player per tick, models within the minimum view distance skip the queue. 0 disables the limit
+    public static int spawnBudgetPerTick = 256;
+    // Bones smaller than this fraction of their distance to the viewer aren't spawned for them. 0 disables it
+    public static double boneLodMinProjectedSize = 0.01;
+    // Viewers further away see the baked impostor of a model instead of its bones. 0 disables impostors
+    public static int impostorDistance = 48;
+    // Hits are tested against a box around the cubes of every bone instead of the single model hitbox
+    public static boolean boneHitboxes = false;
+    // Spawns an invisible interaction entity over every model so the client detects clicks and attacks on it
+    public static boolean clientSideHitDetection = false;
 
 
 }
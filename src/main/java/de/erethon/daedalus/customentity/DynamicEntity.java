@@ -1,6 +1,7 @@
 package de.erethon.daedalus.customentity;
 
 import de.erethon.daedalus.MetadataHandler;
+import de.erethon.daedalus.customentity.core.ModeledEntityIndex;
 import de.erethon.daedalus.customentity.core.ModeledEntityInterface;
 import de.erethon.daedalus.dataconverter.FileModelConverter;
 import org.bukkit.Bukkit;
@@ -19,8 +20,6 @@ import java.util.HashMap;
 import java.util.UUID;
 
 public class DynamicEntity extends ModeledEntity implements ModeledEntityInterface {
-    //Note: currently only storing these when they spawn, can't think of a reason why that might be bad for now
-    private static final HashMap<UUID, DynamicEntity> dynamicEntities = new HashMap<>();
     private static final NamespacedKey namespacedKey = new NamespacedKey(MetadataHandler.PLUGIN, "DynamicEntity");
     private final String name = "default";
     private boolean damagesOnContact = true;
@@ -39,11 +38,11 @@ public class DynamicEntity extends ModeledEntity implements ModeledEntityInterfa
     }
 
     public static boolean isDynamicEntity(Entity entity) {
-        return dynamicEntities.containsKey(entity.getUniqueId());
+        return ModeledEntityIndex.get(entity) instanceof DynamicEntity;
     }
 
     public static DynamicEntity getDynamicEntity(Entity entity) {
-        return dynamicEntities.get(entity.getUniqueId());
+        return ModeledEntityIndex.get(entity) instanceof DynamicEntity dynamicEntity ? dynamicEntity : null;
     }
 
     @Nullable
@@ -65,7 +64,6 @@ public class DynamicEntity extends ModeledEntity implements ModeledEntityInterfa
 
     public void spawn(LivingEntity entity) {
         super.spawn(entity);
-        dynamicEntities.put(entity.getUniqueId(), this);
         syncSkeletonWithEntity();
     }
 
@@ -97,12 +95,6 @@ public class DynamicEntity extends ModeledEntity implements ModeledEntityInterfa
         else return super.getLocation();
     }
 
-    @Override
-    public void remove() {
-        super.remove();
-        dynamicEntities.remove(underlyingEntity.getUniqueId());
-    }
-
     /**
      * Gets the location of the model's body, clamped so its yaw never
      * lags the head yaw by more than ±45°.
@@ -167,7 +159,15 @@ public class DynamicEntity extends ModeledEntity implements ModeledEntityInterfa
         return name;
     }
 
+    /**
+     * Collects the dynamic entities currently instanced, the map is a copy
+     */
     public static HashMap<UUID, DynamicEntity> getDynamicEntities() {
+        HashMap<UUID, DynamicEntity> dynamicEntities = new HashMap<>();
+        for (ModeledEntity modeledEntity : ModeledEntityIndex.getAll()) {
+            if (modeledEntity instanceof DynamicEntity dynamicEntity)
+                dynamicEntities.put(dynamicEntity.getUnderlyingEntity().getUniqueId(), dynamicEntity);
+        }
         return dynamicEntities;
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package de.erethon.daedalus.customentity;
 
 import de.erethon.daedalus.MetadataHandler;
+import de.erethon.daedalus.animation.AnimationLayer;
 import de.erethon.daedalus.customentity.core.Bone;
+import de.erethon.daedalus.customentity.core.HitboxGrid;
+import de.erethon.daedalus.customentity.core.ModeledEntityIndex;
 import de.erethon.daedalus.customentity.core.RegisterModelEntity;
 import de.erethon.daedalus.customentity.core.Skeleton;
 import de.erethon.daedalus.customentity.core.components.AnimationComponent;
@@ -18,7 +21,9 @@ import org.bukkit.World;
 import org.bukkit.entity.*;
 import org.bukkit.persistence.PersistentDataType;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.UUID;
@@ -40,7 +45,7 @@ public class ModeledEntity {
     private boolean isDying = false;
     private SkeletonBlueprint skeletonBlueprint = null;
     private Skeleton skeleton;
-    private boolean isRemoved = false;
+    private volatile boolean isRemoved = false;
     private double scaleModifier = 1.0;
     // Collision detection properties
 
@@ -70,6 +75,7 @@ public class ModeledEntity {
         }
 
         skeleton = new Skeleton(skeletonBlueprint, this);
+        hitboxComponent.buildBoneHitboxes();
 
         animationComponent.initializeAnimationManager(fileModelConverter);
 
@@ -81,6 +87,7 @@ public class ModeledEntity {
         this.underlyingEntity = underlyingEntity;
         if (!(underlyingEntity instanceof PlayerDisguiseEntity))
             RegisterModelEntity.registerModelEntity(underlyingEntity, getSkeletonBlueprint().getModelName());
+        ModeledEntityIndex.register(underlyingEntity, this);
         hitboxComponent.setCustomHitboxOnUnderlyingEntity();
     }
 
@@ -173,15 +180,18 @@ public class ModeledEntity {
             return;
         }
 
+        // Marked first, so ticks still running on other threads stop putting the entity back into the hitbox grid
+        isRemoved = true;
         // Clear callbacks when removing
         interactionComponent.clearCallbacks();
         skeleton.remove();
         loadedModeledEntities.remove(this);
+        HitboxGrid.remove(this);
+        if (underlyingEntity != null) ModeledEntityIndex.unregister(underlyingEntity, this);
         if (underlyingEntity != null &&
                 (!(this instanceof PropEntity) ||
                         this instanceof PropEntity propEntity && !propEntity.isPersistent()))
                 underlyingEntity.remove();
-        isRemoved = true;
     }
 
     /**
@@ -350,6 +360,44 @@ public class ModeledEntity {
         return animationComponent.playAnimation(animationName, blendAnimation, loop);
     }
 
+    /**
+     * Plays an animation on a named layer over the current animation, such as an attack on the upper body.
+     * Playing a layer with the name of a running one replaces it.
+     *
+     * @param layerName     Name of the layer, used to stop it or change its weight
+     * @param animationName Name of the animation - case-sensitive
+     * @param mode          Whether the layer overrides the pose below it or adds to it
+     * @param weight        How strongly the layer is blended, from 0 to 1
+     * @param loop          Whether the layer loops, non looping layers remove themselves once they end
+     * @param fadeInTicks   Ticks the layer fades in over
+     * @param fadeOutTicks  Ticks the layer fades out over
+     * @param maskBones     Names of the bones the layer moves, their child bones included. Null for every bone
+     * @return Whether the layer successfully started playing.
+     */
+    public boolean playAnimationLayer(String layerName, String animationName, AnimationLayer.Mode mode, float weight, boolean loop,
+                                      int fadeInTicks, int fadeOutTicks, @Nullable Collection<String> maskBones) {
+        return animationComponent.playAnimationLayer(layerName, animationName, mode, weight, loop, fadeInTicks, fadeOutTicks, maskBones);
+    }
+
+    /**
+     * Fades out an animation layer, it is removed once it is gone.
+     *
+     * @param layerName Name of the layer
+     */
+    public void stopAnimationLayer(String layerName) {
+        animationComponent.stopAnimationLayer(layerName);
+    }
+
+    /**
+     * Sets how strongly an animation layer is blended.
+     *
+     * @param layerName Name of the layer
+     * @param weight    Weight from 0 to 1
+     */
+    public void setAnimationLayerWeight(String layerName, float weight) {
+        animationComponent.setAnimationLayerWeight(layerName, weight);
+    }
+
     /**
      * Stops all currently running animations.
      *
@@ -378,6 +426,14 @@ public class ModeledEntity {
         return isDying;
     }
 
+    /**
+     * Flags the entity as removed, for subclasses with their own remove logic. Has to happen before the entity leaves
+     * the hitbox grid
+     */
+    protected void markRemoved() {
+        isRemoved = true;
+    }
+
     public boolean isRemoved() {
         return isRemoved;
     }
@@ -408,6 +464,7 @@ public class ModeledEntity {
 
     public void setScaleModifier(double scaleModifier) {
         this.scaleModifier = scaleModifier;
+        if (skeleton != null) skeleton.markPoseDirty();
         //skeleton.getBoneTransforms().setScale(scaleModifier);
     }
 
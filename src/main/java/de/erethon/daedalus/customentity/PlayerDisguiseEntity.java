@@ -1,6 +1,8 @@
 package de.erethon.daedalus.customentity;
 
 import de.erethon.daedalus.MetadataHandler;
+import de.erethon.daedalus.customentity.core.HitboxGrid;
+import de.erethon.daedalus.customentity.core.ModeledEntityIndex;
 import de.erethon.daedalus.customentity.core.RegisterModelEntity;
 import de.erethon.daedalus.dataconverter.FileModelConverter;
 import org.bukkit.Bukkit;
@@ -33,9 +35,12 @@ public class PlayerDisguiseEntity extends DynamicEntity {
 
     @Override
     public void remove() {
+        markRemoved();
         getInteractionComponent().clearCallbacks();
         getSkeleton().remove();
         getLoadedModeledEntities().remove(this);
+        HitboxGrid.remove(this);
+        ModeledEntityIndex.unregister(underlyingEntity, this);
         underlyingEntity.getPersistentDataContainer().remove(RegisterModelEntity.ENTITY_KEY);
     }
 }
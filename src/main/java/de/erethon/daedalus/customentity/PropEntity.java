@@ -2,6 +2,7 @@ package de.erethon.daedalus.customentity;
 
 import de.erethon.daedalus.MetadataHandler;
 import de.erethon.daedalus.config.props.PropBlocks;
+import de.erethon.daedalus.customentity.core.ModeledEntityIndex;
 import de.erethon.daedalus.customentity.core.components.PropBlockComponent;
 import de.erethon.bedrock.chat.MessageUtil;
 import org.bukkit.*;
@@ -17,13 +18,19 @@ import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.persistence.PersistentDataType;
 
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class PropEntity extends StaticEntity {
     public static final NamespacedKey propNamespacedKey = new NamespacedKey(MetadataHandler.PLUGIN, "prop");
-    public static HashMap<UUID, PropEntity> propEntities = new HashMap<>();
+    /**
+     * Loaded props by the UUID of their armor stand, a read-only view of the {@link ModeledEntityIndex}
+     *
+     * @deprecated use {@link #getPropEntity(Entity)}
+     */
+    @Deprecated
+    public static final Map<UUID, PropEntity> propEntities = ModeledEntityIndex.getProps();
     private final String entityID;
     private final PropBlockComponent propBlockComponent = new PropBlockComponent(this);
     //private PropsConfigFields propsConfigFields;
@@ -45,7 +52,6 @@ public class PropEntity extends StaticEntity {
         propBlockComponent.showFakePropBlocksToAllPlayers();
         spawn(armorStand);
         chunkHash = chunkToString(underlyingEntity.getLocation().getChunk());
-        propEntities.put(armorStand.getUniqueId(), this);
     }
 
     public static void onStartup() {
@@ -77,14 +83,22 @@ public class PropEntity extends StaticEntity {
 
     public static PropEntity respawnPropEntityFromArmorStand(String entityID, ArmorStand armorStand) {
         MessageUtil.log("checking if prop entity " + entityID + " already exists at " + armorStand.getLocation() + "...");
-        if (propEntities.containsKey(armorStand.getUniqueId())) {
-            return propEntities.get(armorStand.getUniqueId());
-        }
+        PropEntity existing = getPropEntity(armorStand);
+        if (existing != null) return existing;
         MessageUtil.log("prop entity " + entityID + " does not exist at " + armorStand.getLocation() + ", creating new prop entity...");
         PropEntity propEntity = new PropEntity(entityID, armorStand);
         return propEntity;
     }
 
+    /**
+     * Gets the loaded prop entity of an armor stand
+     *
+     * @return the prop entity, or null if the armor stand isn't one or it isn't loaded
+     */
+    public static PropEntity getPropEntity(Entity entity) {
+        return ModeledEntityIndex.get(entity) instanceof PropEntity propEntity ? propEntity : null;
+    }
+
     public static boolean isPropEntity(ArmorStand armorStand) {
         return armorStand.getPersistentDataContainer().has(propNamespacedKey, PersistentDataType.STRING);
     }
@@ -107,7 +121,6 @@ public class PropEntity extends StaticEntity {
             entity.getPersistentDataContainer().set(propNamespacedKey, PersistentDataType.STRING, entityID);
         }));
         chunkHash = chunkToString(underlyingEntity.getLocation().getChunk());
-        propEntities.put(underlyingEntity.getUniqueId(), this);
     }
 
     public void setCustomDataString(NamespacedKey customNamespacedKey, String data) {
@@ -122,7 +135,6 @@ public class PropEntity extends StaticEntity {
     public void remove() {
         super.remove();
         showRealBlocksToAllPlayers();
-        propEntities.remove(underlyingEntity.getUniqueId());
         if (!persistent) underlyingEntity.remove();
         if (isDying() && underlyingEntity != null) underlyingEntity.remove();
     }
@@ -197,14 +209,11 @@ public class PropEntity extends StaticEntity {
             }
         }
 
-        //todo: well this isn't going to scale well
         @EventHandler
         private void onChunkUnloadEvent(ChunkUnloadEvent event) {
-            String chunkHash = chunkToString(event.getChunk());
-            for (PropEntity value : propEntities.values()) {
-                if (value.chunkHash.equals(chunkHash)) {
-                    value.remove();
-                }
+            // The index is concurrent, so props can be removed while iterating it
+            for (PropEntity propEntity : ModeledEntityIndex.getPropsInChunk(chunkToString(event.getChunk()))) {
+                propEntity.remove();
             }
         }
     }
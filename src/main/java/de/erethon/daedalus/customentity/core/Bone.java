@@ -4,17 +4,20 @@ import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.dataconverter.BoneBlueprint;
 import de.erethon.daedalus.thirdparty.BedrockChecker;
 import de.erethon.bedrock.chat.MessageUtil;
-import org.bukkit.Bukkit;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.ClientboundBundlePacket;
 import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.Particle;
+import org.bukkit.craftbukkit.entity.CraftPlayer;
 import org.bukkit.entity.Player;
 import org.joml.Vector3f;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.UUID;
 
 public class Bone {
     private final BoneBlueprint boneBlueprint;
@@ -22,25 +25,45 @@ public class Bone {
     private final Bone parent;
     private final Skeleton skeleton;
     private final BoneTransforms boneTransforms;
-    private Vector3f animationTranslation = new Vector3f();
-    private Vector3f animationRotation = new Vector3f();
+    private final Vector3f animationTranslation = new Vector3f();
+    private final Vector3f animationRotation = new Vector3f();
     private float animationScale = -1;
+    // Small bones aren't perceptible far away, so viewers beyond this distance don't get them spawned
+    private final float maxViewDistance;
+    // Impostors are only spawned beyond this distance, everything else is always spawned this close
+    private final float minViewDistance;
 
     public Bone(BoneBlueprint boneBlueprint, Bone parent, Skeleton skeleton) {
         this.boneBlueprint = boneBlueprint;
         this.parent = parent;
         this.skeleton = skeleton;
+        float extent = boneBlueprint.getWorldExtent();
+        float impostorDistance = DefaultConfig.impostorDistance > 0 ? DefaultConfig.impostorDistance : Float.MAX_VALUE;
+        if (boneBlueprint.isImpostor()) {
+            this.minViewDistance = impostorDistance;
+            this.maxViewDistance = Float.MAX_VALUE;
+        } else {
+            this.minViewDistance = -Float.MAX_VALUE;
+            float maxViewDistance = Float.MAX_VALUE;
+            if (!boneBlueprint.isNameTag() && extent > 0 && DefaultConfig.boneLodMinProjectedSize > 0)
+                maxViewDistance = (float) (extent / DefaultConfig.boneLodMinProjectedSize);
+            // Far viewers get the impostor instead
+            if (!boneBlueprint.isNameTag() && skeleton.getSkeletonBlueprint().hasImpostors())
+                maxViewDistance = Math.min(maxViewDistance, impostorDistance);
+            this.maxViewDistance = maxViewDistance;
+        }
         this.boneTransforms = new BoneTransforms(this, parent);
+        skeleton.registerBone(this);
         for (BoneBlueprint child : boneBlueprint.getBoneBlueprintChildren())
             boneChildren.add(new Bone(child, this, skeleton));
     }
 
     public void updateAnimationTranslation(float x, float y, float z) {
-        animationTranslation = new Vector3f(x, y, z);
+        animationTranslation.set(x, y, z);
     }
 
     public void updateAnimationRotation(double x, double y, double z) {
-        animationRotation = new Vector3f((float) Math.toRadians(x), (float) Math.toRadians(y), (float) Math.toRadians(z));
+        animationRotation.set((float) Math.toRadians(x), (float) Math.toRadians(y), (float) Math.toRadians(z));
     }
 
     public void updateAnimationScale(float animationScale) {
@@ -85,7 +108,17 @@ public class Bone {
     boolean warned = false;
 
     public void displayTo(Player player) {
-        boolean isBedrock = BedrockChecker.isBedrock(player);
+        List<Packet<? super ClientGamePacketListener>> packets = new ArrayList<>(2);
+        ViewerSession session = ViewerRegistry.getSession(player.getUniqueId());
+        collectSpawnPackets(session != null ? session.isBedrock() : BedrockChecker.isBedrock(player), packets);
+        if (packets.isEmpty()) return;
+        ((CraftPlayer) player).getHandle().connection.send(new ClientboundBundlePacket(packets));
+    }
+
+    /**
+     * Adds the spawn packets of this bone to a list, used by the skeleton to spawn all bones in one bundle
+     */
+    public void collectSpawnPackets(boolean isBedrock, List<Packet<? super ClientGamePacketListener>> packets) {
         if (isBedrock && DefaultConfig.sendCustomModelsToBedrockClients) return;
         if (boneBlueprint.isNameTag()) {
             if (boneTransforms.getPacketTextDisplayEntity() == null) {
@@ -95,25 +128,37 @@ public class Bone {
                 }
                 return;
             }
-            boneTransforms.getPacketTextDisplayEntity().displayTo(player);
+            boneTransforms.getPacketTextDisplayEntity().collectSpawnPackets(packets);
         }
         else if (boneTransforms.getPacketDisplayEntity() != null)
-            boneTransforms.getPacketDisplayEntity().displayTo(player);
+            boneTransforms.getPacketDisplayEntity().collectSpawnPackets(packets);
     }
 
-    public void hideFrom(UUID playerUUID) {
-        Player player = Bukkit.getPlayer(playerUUID);
+    /**
+     * Adds the entity ids of this bone to a list, used by the skeleton to despawn all bones in one packet
+     */
+    public void collectEntityIds(IntList entityIds) {
         if (boneTransforms.getPacketTextDisplayEntity() != null)
-            boneTransforms.getPacketTextDisplayEntity().hideFrom(player);
+            entityIds.add(boneTransforms.getPacketTextDisplayEntity().getEntityId());
         if (boneTransforms.getPacketArmorStandEntity() != null)
-            boneTransforms.getPacketArmorStandEntity().hideFrom(player);
+            entityIds.add(boneTransforms.getPacketArmorStandEntity().getEntityId());
         if (boneTransforms.getPacketDisplayEntity() != null)
-            boneTransforms.getPacketDisplayEntity().hideFrom(player);
+            entityIds.add(boneTransforms.getPacketDisplayEntity().getEntityId());
+    }
+
+    /**
+     * Flags the packet entities as removed, the skeleton sends the remove packet for all bones at once
+     */
+    void markRemoved() {
+        if (boneTransforms.getPacketTextDisplayEntity() != null)
+            boneTransforms.getPacketTextDisplayEntity().markRemoved();
+        if (boneTransforms.getPacketArmorStandEntity() != null) boneTransforms.getPacketArmorStandEntity().markRemoved();
+        if (boneTransforms.getPacketDisplayEntity() != null) boneTransforms.getPacketDisplayEntity().markRemoved();
     }
 
     public void setHorseLeatherArmorColor(Color color) {
-        if (boneTransforms.getPacketArmorStandEntity() != null)
-            //boneTransforms.getPacketArmorStandEntity().setHorseLeatherArmorColor(color); - Bedrock support
+        //if (boneTransforms.getPacketArmorStandEntity() != null)
+        //    boneTransforms.getPacketArmorStandEntity().setHorseLeatherArmorColor(color); - Bedrock support
         if (boneTransforms.getPacketDisplayEntity() != null)
             boneTransforms.getPacketDisplayEntity().setHorseLeatherArmorColor(color);
     }
@@ -143,7 +188,6 @@ public class Bone {
         if (boneTransforms.getPacketDisplayEntity() != null) {
             boneTransforms.getPacketDisplayEntity().teleport(boneTransforms.getDisplayEntityTargetLocation());
         }
-        skeleton.getSkeletonWatchers().resync(true);
     }
 
     // Getters
@@ -163,6 +207,24 @@ public class Bone {
         return animationScale;
     }
 
+    /**
+     * Furthest level of detail distance at which the bone is still spawned for a viewer, nametags are always spawned
+     */
+    public float getMaxViewDistance() {
+        return maxViewDistance;
+    }
+
+    /**
+     * Level of detail distance the viewer has to be beyond for the bone to be spawned, only used by impostors
+     */
+    public float getMinViewDistance() {
+        return minViewDistance;
+    }
+
+    public boolean isVisibleAt(float lodDistance) {
+        return lodDistance > minViewDistance && lodDistance <= maxViewDistance;
+    }
+
     public BoneTransforms getBoneTransforms() {
         return boneTransforms;
     }
@@ -0,0 +1,267 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.dataconverter.BoneBlueprint;
+import de.erethon.daedalus.utils.TransformationMatrix;
+import org.bukkit.Location;
+import org.bukkit.util.Vector;
+import org.joml.Matrix3d;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per-bone hitboxes of a skeleton, organised as a bounding volume hierarchy that mirrors the bones.
+ * Every bone with cubes gets an OBB around them which follows its global transform, and every node keeps an
+ * axis-aligned box around its whole subtree, so hit tests only descend into the limbs they can actually reach.
+ * <p>
+ * The tree is refitted by the thread ticking its entity while hit tests come from the main thread, so every refit
+ * writes a new pose and publishes it once it is complete. Hit tests only ever read a published pose.
+ */
+public class BoneHitboxTree {
+
+    // Doubles per node in a pose: subtree bounds, then the box center, rotation and half extents
+    private static final int MIN_X = 0, MIN_Y = 1, MIN_Z = 2, MAX_X = 3, MAX_Y = 4, MAX_Z = 5;
+    private static final int CENTER = 6, ROTATION = 9, HALF_EXTENTS = 18;
+    private static final int STRIDE = 21;
+
+    private final Node root;
+    private final int nodeCount;
+    private volatile double[] pose;
+    // Scratch objects for refitting, only used by the thread ticking the entity
+    private final Matrix3d rotationScratch = new Matrix3d();
+    private final Vector3d halfExtentsScratch = new Vector3d();
+
+    /**
+     * The bone that was hit and how far along the ray or segment it was hit
+     */
+    public record Hit(Bone bone, double distance) {
+    }
+
+    public BoneHitboxTree(Bone rootBone) {
+        List<Node> nodes = new ArrayList<>();
+        this.root = build(rootBone, nodes);
+        this.nodeCount = nodes.size();
+        // Empty bounds until the first refit, so nothing is hit before the bones have been placed
+        double[] emptyPose = new double[nodeCount * STRIDE];
+        for (int offset = 0; offset < emptyPose.length; offset += STRIDE) clearBounds(emptyPose, offset);
+        this.pose = emptyPose;
+    }
+
+    private static Node build(Bone bone, List<Node> nodes) {
+        List<Node> children = new ArrayList<>();
+        for (Bone child : bone.getBoneChildren()) {
+            Node node = build(child, nodes);
+            if (node != null) children.add(node);
+        }
+        BoneBlueprint blueprint = bone.getBoneBlueprint();
+        Vector3f halfExtents = blueprint.getHitboxHalfExtents();
+        boolean hasBox = !blueprint.isNameTag() && !blueprint.isImpostor() && halfExtents.lengthSquared() > 0;
+        if (!hasBox && children.isEmpty()) return null;
+        Node node = new Node(bone, nodes.size() * STRIDE, hasBox ? new Vector3d(halfExtents) : null, children.toArray(new Node[0]));
+        nodes.add(node);
+        return node;
+    }
+
+    private static void clearBounds(double[] pose, int offset) {
+        pose[offset + MIN_X] = pose[offset + MIN_Y] = pose[offset + MIN_Z] = Double.MAX_VALUE;
+        pose[offset + MAX_X] = pose[offset + MAX_Y] = pose[offset + MAX_Z] = -Double.MAX_VALUE;
+    }
+
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Moves every bone hitbox to the current pose of its bone and refits the subtree bounds, bottom up
+     *
+     * @param skeletonLocation Location the bone transforms are relative to
+     */
+    public void refit(Location skeletonLocation) {
+        if (root == null) return;
+        // A fresh pose every time, a hit test may still be reading the previous one
+        double[] nextPose = new double[nodeCount * STRIDE];
+        refit(root, nextPose, skeletonLocation.getX(), skeletonLocation.getY(), skeletonLocation.getZ());
+        pose = nextPose;
+    }
+
+    private void refit(Node node, double[] pose, double baseX, double baseY, double baseZ) {
+        int offset = node.offset;
+        clearBounds(pose, offset);
+        if (node.baseHalfExtents != null) {
+            TransformationMatrix globalMatrix = node.bone.getBoneTransforms().getGlobalMatrix();
+            double[] translation = globalMatrix.getTranslation();
+            double[] scale = globalMatrix.getScale();
+            Matrix3d rotation = globalMatrix.getRotationMatrix(rotationScratch);
+            Vector3d halfExtents = halfExtentsScratch.set(node.baseHalfExtents).mul(scale[0], scale[1], scale[2]);
+            double centerX = baseX + translation[0];
+            double centerY = baseY + translation[1];
+            double centerZ = baseZ + translation[2];
+            pose[offset + CENTER] = centerX;
+            pose[offset + CENTER + 1] = centerY;
+            pose[offset + CENTER + 2] = centerZ;
+            // Local axes of the box in world space, one after another
+            pose[offset + ROTATION] = rotation.m00;
+            pose[offset + ROTATION + 1] = rotation.m01;
+            pose[offset + ROTATION + 2] = rotation.m02;
+            pose[offset + ROTATION + 3] = rotation.m10;
+            pose[offset + ROTATION + 4] = rotation.m11;
+            pose[offset + ROTATION + 5] = rotation.m12;
+            pose[offset + ROTATION + 6] = rotation.m20;
+            pose[offset + ROTATION + 7] = rotation.m21;
+            pose[offset + ROTATION + 8] = rotation.m22;
+            pose[offset + HALF_EXTENTS] = halfExtents.x;
+            pose[offset + HALF_EXTENTS + 1] = halfExtents.y;
+            pose[offset + HALF_EXTENTS + 2] = halfExtents.z;
+
+            // Extent of the rotated box along each world axis
+            double extentX = Math.abs(rotation.m00) * halfExtents.x + Math.abs(rotation.m10) * halfExtents.y + Math.abs(rotation.m20) * halfExtents.z;
+            double extentY = Math.abs(rotation.m01) * halfExtents.x + Math.abs(rotation.m11) * halfExtents.y + Math.abs(rotation.m21) * halfExtents.z;
+            double extentZ = Math.abs(rotation.m02) * halfExtents.x + Math.abs(rotation.m12) * halfExtents.y + Math.abs(rotation.m22) * halfExtents.z;
+            pose[offset + MIN_X] = centerX - extentX;
+            pose[offset + MIN_Y] = centerY - extentY;
+            pose[offset + MIN_Z] = centerZ - extentZ;
+            pose[offset + MAX_X] = centerX + extentX;
+            pose[offset + MAX_Y] = centerY + extentY;
+            pose[offset + MAX_Z] = centerZ + extentZ;
+        }
+        for (Node child : node.children) {
+            refit(child, pose, baseX, baseY, baseZ);
+            int childOffset = child.offset;
+            pose[offset + MIN_X] = Math.min(pose[offset + MIN_X], pose[childOffset + MIN_X]);
+            pose[offset + MIN_Y] = Math.min(pose[offset + MIN_Y], pose[childOffset + MIN_Y]);
+            pose[offset + MIN_Z] = Math.min(pose[offset + MIN_Z], pose[childOffset + MIN_Z]);
+            pose[offset + MAX_X] = Math.max(pose[offset + MAX_X], pose[childOffset + MAX_X]);
+            pose[offset + MAX_Y] = Math.max(pose[offset + MAX_Y], pose[childOffset + MAX_Y]);
+            pose[offset + MAX_Z] = Math.max(pose[offset + MAX_Z], pose[childOffset + MAX_Z]);
+        }
+    }
+
+    /**
+     * Casts a ray from an eye location along its direction
+     *
+     * @return the closest bone hit with the distance to it, or null if nothing was hit
+     */
+    public Hit rayIntersection(Location eyeLocation, double maxDistance) {
+        Vector direction = eyeLocation.getDirection();
+        Hit hit = segmentIntersection(eyeLocation.getX(), eyeLocation.getY(), eyeLocation.getZ(),
+                eyeLocation.getX() + direction.getX() * maxDistance,
+                eyeLocation.getY() + direction.getY() * maxDistance,
+                eyeLocation.getZ() + direction.getZ() * maxDistance);
+        return hit == null ? null : new Hit(hit.bone, hit.distance * maxDistance);
+    }
+
+    /**
+     * Sweeps a segment through the bone hitboxes
+     *
+     * @return the first bone the segment enters with the fraction of the segment at which it does, or null
+     */
+    public Hit segmentIntersection(double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        if (root == null) return null;
+        Search search = new Search(pose, fromX, fromY, fromZ, toX - fromX, toY - fromY, toZ - fromZ);
+        search.visit(root);
+        return search.bone == null ? null : new Hit(search.bone, search.fraction);
+    }
+
+    public double getMinX() {
+        return pose[root.offset + MIN_X];
+    }
+
+    public double getMinZ() {
+        return pose[root.offset + MIN_Z];
+    }
+
+    public double getMaxX() {
+        return pose[root.offset + MAX_X];
+    }
+
+    public double getMaxZ() {
+        return pose[root.offset + MAX_Z];
+    }
+
+    private static final class Node {
+        private final Bone bone;
+        // Where the node starts in a pose
+        private final int offset;
+        private final Vector3d baseHalfExtents;
+        private final Node[] children;
+
+        private Node(Bone bone, int offset, Vector3d baseHalfExtents, Node[] children) {
+            this.bone = bone;
+            this.offset = offset;
+            this.baseHalfExtents = baseHalfExtents;
+            this.children = children;
+        }
+    }
+
+    private static final class Search {
+        private final double[] pose;
+        private final double fromX, fromY, fromZ, deltaX, deltaY, deltaZ;
+        private Bone bone = null;
+        private double fraction = 1;
+        private double slabMin;
+        private double slabMax;
+
+        private Search(double[] pose, double fromX, double fromY, double fromZ, double deltaX, double deltaY, double deltaZ) {
+            this.pose = pose;
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.fromZ = fromZ;
+            this.deltaX = deltaX;
+            this.deltaY = deltaY;
+            this.deltaZ = deltaZ;
+        }
+
+        private void visit(Node node) {
+            // Subtrees the segment doesn't enter before the closest hit so far can't contain a closer one
+            if (entry(node) > fraction) return;
+            if (node.baseHalfExtents != null) {
+                double hit = boxEntry(node.offset);
+                if (hit >= 0 && (bone == null || hit < fraction)) {
+                    bone = node.bone;
+                    fraction = hit;
+                }
+            }
+            for (Node child : node.children) visit(child);
+        }
+
+        // Slab test against the subtree bounds, returns where the segment enters them or infinity if it misses
+        private double entry(Node node) {
+            int offset = node.offset;
+            slabMin = 0;
+            slabMax = 1;
+            if (!slab(fromX, deltaX, pose[offset + MIN_X], pose[offset + MAX_X]) ||
+                    !slab(fromY, deltaY, pose[offset + MIN_Y], pose[offset + MAX_Y]) ||
+                    !slab(fromZ, deltaZ, pose[offset + MIN_Z], pose[offset + MAX_Z])) return Double.POSITIVE_INFINITY;
+            return slabMin;
+        }
+
+        // Same slab test in the local space of the bone box, returns where the segment enters it or -1
+        private double boxEntry(int offset) {
+            double relativeX = fromX - pose[offset + CENTER];
+            double relativeY = fromY - pose[offset + CENTER + 1];
+            double relativeZ = fromZ - pose[offset + CENTER + 2];
+            slabMin = 0;
+            slabMax = 1;
+            for (int axis = 0; axis < 3; axis++) {
+                int axisOffset = offset + ROTATION + axis * 3;
+                double axisX = pose[axisOffset], axisY = pose[axisOffset + 1], axisZ = pose[axisOffset + 2];
+                double extent = pose[offset + HALF_EXTENTS + axis];
+                double from = axisX * relativeX + axisY * relativeY + axisZ * relativeZ;
+                double delta = axisX * deltaX + axisY * deltaY + axisZ * deltaZ;
+                if (!slab(from, delta, -extent, extent)) return -1;
+            }
+            return slabMin;
+        }
+
+        private boolean slab(double from, double delta, double min, double max) {
+            if (Math.abs(delta) < 1e-9) return from >= min && from <= max;
+            double t1 = (min - from) / delta;
+            double t2 = (max - from) / delta;
+            slabMin = Math.max(slabMin, Math.min(t1, t2));
+            slabMax = Math.min(slabMax, Math.max(t1, t2));
+            return slabMin <= slabMax;
+        }
+    }
+}
@@ -138,11 +138,14 @@ public class BoneTransforms {
     private void initializeTextDisplayBone() {
         Location textDisplayLocation = getArmorStandTargetLocation();
         packetTextDisplayEntity = new PacketTextDisplayEntity(textDisplayLocation);
+        packetTextDisplayEntity.setViewers(bone.getSkeleton().getSkeletonWatchers().getViewerSet());
     }
 
     private void initializeDisplayEntityBone() {
         Location displayEntityLocation = getDisplayEntityTargetLocation();
         packetDisplayEntity = new PacketBoneEntity(displayEntityLocation);
+        packetDisplayEntity.setViewers(bone.getSkeleton().getSkeletonWatchers().getViewerSet());
+        packetDisplayEntity.setViewDistanceRange(bone.getMinViewDistance(), bone.getMaxViewDistance());
         packetDisplayEntity.initializeModel(bone.getBoneBlueprint().getModelID());
         //packetDisplayEntity.sendLocationAndRotationPacket(displayEntityLocation, getDisplayEntityRotation());
         packetDisplayEntity.sendLocationAndRotationAndScalePacket(getDisplayEntityTargetLocation(), getDisplayEntityRotation(), (float) globalMatrix.getScale()[0] * 2.5f);
@@ -223,6 +226,7 @@ public class BoneTransforms {
 
     private void sendDisplayEntityUpdatePacket() {
         if (packetDisplayEntity != null) {
+            packetDisplayEntity.setInterpolationDuration(bone.getSkeleton().getInterpolationTicks());
             packetDisplayEntity.sendLocationAndRotationAndScalePacket(getDisplayEntityTargetLocation(), getDisplayEntityRotation(), (float) globalMatrix.getScale()[0] * 2.5f);
         }
     }
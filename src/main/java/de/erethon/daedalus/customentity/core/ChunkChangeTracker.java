@@ -0,0 +1,158 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.customentity.core.occlusion.OcclusionEngine;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFormEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.world.StructureGrowEvent;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Remembers when blocks last changed in each chunk, so cached line of sight results can tell if they are stale.
+ * Chunks are hashed into a fixed size table, a collision only causes an unnecessary invalidation.
+ */
+public class ChunkChangeTracker implements Listener {
+
+    private static final int TABLE_SIZE = 1 << 14;
+    private static final AtomicLongArray lastChanges = new AtomicLongArray(TABLE_SIZE);
+    private static final long ORIGIN = System.nanoTime();
+
+    /**
+     * Monotonic clock in nanoseconds used for the change stamps, never negative so untouched chunks compare as unchanged
+     */
+    public static long now() {
+        return System.nanoTime() - ORIGIN + 1;
+    }
+
+    /**
+     * Checks whether any chunk overlapping the area changed after the given time
+     *
+     * @param since Time as returned by {@link #now()}
+     */
+    public static boolean hasChanged(World world, double minX, double minZ, double maxX, double maxZ, long since) {
+        int minChunkX = (int) Math.floor(minX) >> 4;
+        int maxChunkX = (int) Math.floor(maxX) >> 4;
+        int minChunkZ = (int) Math.floor(minZ) >> 4;
+        int maxChunkZ = (int) Math.floor(maxZ) >> 4;
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                if (lastChanges.get(slot(world.getUID(), chunkX, chunkZ)) - since > 0) return true;
+            }
+        }
+        return false;
+    }
+
+    public static void markChanged(World world, int chunkX, int chunkZ) {
+        lastChanges.set(slot(world.getUID(), chunkX, chunkZ), now());
+        OcclusionEngine.markDirty(world, chunkX, chunkZ);
+    }
+
+    /**
+     * Stamps a chunk again once its occlusion data was rebuilt, without queueing another rebuild.
+     * Results cached between the block change and the rebuild were traced against the old data.
+     */
+    public static void markRebuilt(UUID worldId, int chunkX, int chunkZ) {
+        lastChanges.set(slot(worldId, chunkX, chunkZ), now());
+    }
+
+    public static void markChanged(Block block) {
+        markChanged(block.getWorld(), block.getX() >> 4, block.getZ() >> 4);
+    }
+
+    private static int slot(UUID worldId, int chunkX, int chunkZ) {
+        long hash = worldId.getLeastSignificantBits() ^ (chunkX * 0x9E3779B97F4A7C15L) ^ (chunkZ * 0xC2B2AE3D27D4EB4FL);
+        hash ^= hash >>> 29;
+        return (int) hash & (TABLE_SIZE - 1);
+    }
+
+    public static void shutdown() {
+        for (int i = 0; i < TABLE_SIZE; i++) lastChanges.set(i, 0);
+    }
+
+    private static void markChanged(List<Block> blocks) {
+        for (Block block : blocks) markChanged(block);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        markChanged(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        markChanged(event.getBlock());
+        markChanged(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        markChanged(event.blockList());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        markChanged(event.getBlock());
+        // Pushed blocks can move into the neighbouring chunk
+        for (Block block : event.getBlocks()) {
+            markChanged(block);
+            markChanged(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        markChanged(event.getBlock());
+        for (Block block : event.getBlocks()) {
+            markChanged(block);
+            markChanged(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onStructureGrow(StructureGrowEvent event) {
+        for (BlockState blockState : event.getBlocks()) {
+            markChanged(event.getWorld(), blockState.getX() >> 4, blockState.getZ() >> 4);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.MetadataHandler;
+import de.erethon.daedalus.customentity.ModeledEntity;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.BoundingBox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds players touching the hitbox of a model, for the hitbox contact callbacks.
+ * Instead of every model scanning every player of its world, each player looks up the models in the hitbox grid
+ * cells under their bounding box, so only players and models that are actually close get the exact OBB test.
+ * The contacts of a pass are collected first and dispatched together on the main thread.
+ */
+public class ContactPass {
+
+    private static final int INTERVAL_TICKS = 2;
+    private static BukkitTask passTask = null;
+
+    private ContactPass() {
+    }
+
+    public static void start() {
+        passTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                runPass();
+            }
+        }.runTaskTimer(MetadataHandler.PLUGIN, INTERVAL_TICKS, INTERVAL_TICKS);
+    }
+
+    public static void shutdown() {
+        if (passTask != null) passTask.cancel();
+        passTask = null;
+    }
+
+    private static void runPass() {
+        List<ModeledEntity> contactEntities = new ArrayList<>();
+        List<Player> contactPlayers = new ArrayList<>();
+        for (World world : Bukkit.getWorlds()) {
+            if (!HitboxGrid.hasEntities(world)) continue;
+            for (Player player : world.getPlayers()) {
+                BoundingBox playerBox = player.getBoundingBox();
+                for (ModeledEntity entity : HitboxGrid.getEntitiesInArea(world,
+                        playerBox.getMinX(), playerBox.getMinZ(), playerBox.getMaxX(), playerBox.getMaxZ())) {
+                    // Models without a hitbox bone are tested against the default OBB of their hitbox component
+                    if (entity.isRemoved() || entity.getInteractionComponent().getHitboxContactCallback() == null) continue;
+                    if (!entity.getHitboxComponent().getObbHitbox().intersectsAABB(playerBox)) continue;
+                    contactEntities.add(entity);
+                    contactPlayers.add(player);
+                }
+            }
+        }
+
+        // Callbacks can move, spawn or remove models, so they only run once the grid isn't being read anymore
+        for (int i = 0; i < contactEntities.size(); i++) {
+            ModeledEntity entity = contactEntities.get(i);
+            if (entity.isRemoved()) continue;
+            entity.getInteractionComponent().callHitboxContactEvent(contactPlayers.get(i));
+        }
+    }
+}
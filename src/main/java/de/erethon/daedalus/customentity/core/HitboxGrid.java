@@ -0,0 +1,215 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.customentity.ModeledEntity;
+import org.bukkit.World;
+import org.joml.Vector3d;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-world uniform grid over the horizontal footprint of every modeled entity's hitbox.
+ * Each entity is listed in every cell its footprint overlaps, and moves between cells as its hitbox component ticks.
+ * Ray casts only test the entities in the cells the ray passes over, and point queries such as projectiles only look
+ * at a single cell, instead of testing every loaded model.
+ * Entities are moved from the ticking threads and removed from the main thread, so every change to the cells happens
+ * under one lock. Queries read the concurrent cell sets without it.
+ */
+public class HitboxGrid {
+
+    private static final int CELL_SHIFT = 3;
+    private static final double CELL_SIZE = 1 << CELL_SHIFT;
+
+    private static final Map<UUID, Map<Long, Set<ModeledEntity>>> worlds = new ConcurrentHashMap<>();
+    private static final Map<ModeledEntity, Footprint> footprints = new ConcurrentHashMap<>();
+    private static final Object lock = new Object();
+
+    private record Footprint(UUID worldId, int minCellX, int minCellZ, int maxCellX, int maxCellZ) {
+    }
+
+    private HitboxGrid() {
+    }
+
+    /**
+     * Moves the entity to the cells its hitbox currently overlaps, does nothing if they didn't change
+     */
+    public static void update(ModeledEntity entity, OrientedBoundingBox obb) {
+        Vector3d center = obb.getCenter();
+        Vector3d halfExtents = obb.getHalfExtents();
+        // Covers the footprint for any yaw
+        double radius = Math.sqrt(halfExtents.x * halfExtents.x + halfExtents.z * halfExtents.z);
+        update(entity, center.x - radius, center.z - radius, center.x + radius, center.z + radius);
+    }
+
+    /**
+     * Moves the entity to the cells overlapping a horizontal area, does nothing if they didn't change or the entity
+     * was removed
+     */
+    public static void update(ModeledEntity entity, double minX, double minZ, double maxX, double maxZ) {
+        World world = entity.getWorld();
+        if (world == null) {
+            remove(entity);
+            return;
+        }
+        Footprint footprint = new Footprint(world.getUID(), toCell(minX), toCell(minZ), toCell(maxX), toCell(maxZ));
+        // Most ticks stay in the same cells, those don't need the lock
+        if (footprint.equals(footprints.get(entity))) return;
+        synchronized (lock) {
+            // Entities are marked removed before they leave the grid, so a tick running late can't add them back
+            if (entity.isRemoved()) return;
+            Footprint previous = footprints.put(entity, footprint);
+            if (footprint.equals(previous)) return;
+            if (previous != null) removeFromCells(entity, previous);
+            Map<Long, Set<ModeledEntity>> cells = worlds.computeIfAbsent(footprint.worldId, k -> new ConcurrentHashMap<>());
+            for (int cellX = footprint.minCellX; cellX <= footprint.maxCellX; cellX++) {
+                for (int cellZ = footprint.minCellZ; cellZ <= footprint.maxCellZ; cellZ++) {
+                    cells.computeIfAbsent(cellKey(cellX, cellZ), k -> ConcurrentHashMap.newKeySet()).add(entity);
+                }
+            }
+        }
+    }
+
+    public static void remove(ModeledEntity entity) {
+        synchronized (lock) {
+            Footprint previous = footprints.remove(entity);
+            if (previous != null) removeFromCells(entity, previous);
+        }
+    }
+
+    public static void shutdown() {
+        synchronized (lock) {
+            worlds.clear();
+            footprints.clear();
+        }
+    }
+
+    /**
+     * Gets the entities whose hitbox footprint overlaps the cell containing a point
+     */
+    public static Set<ModeledEntity> getEntitiesAt(World world, double x, double z) {
+        Map<Long, Set<ModeledEntity>> cells = worlds.get(world.getUID());
+        if (cells == null) return Collections.emptySet();
+        Set<ModeledEntity> cell = cells.get(cellKey(toCell(x), toCell(z)));
+        return cell == null ? Collections.emptySet() : cell;
+    }
+
+    /**
+     * Collects the entities in every cell overlapping a horizontal area, entities spanning several cells are only listed once
+     */
+    public static List<ModeledEntity> getEntitiesInArea(World world, double minX, double minZ, double maxX, double maxZ) {
+        List<ModeledEntity> candidates = new ArrayList<>();
+        collectEntitiesInArea(world, minX, minZ, maxX, maxZ, candidates, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return candidates;
+    }
+
+    /**
+     * Same as {@link #getEntitiesInArea}, but adds to buffers the caller can reuse
+     *
+     * @param candidates List the entities are added to
+     * @param seen       Entities already in the list, used to skip duplicates
+     */
+    public static void collectEntitiesInArea(World world, double minX, double minZ, double maxX, double maxZ,
+                                             List<ModeledEntity> candidates, Set<ModeledEntity> seen) {
+        Map<Long, Set<ModeledEntity>> cells = worlds.get(world.getUID());
+        if (cells == null || cells.isEmpty()) return;
+        for (int cellX = toCell(minX); cellX <= toCell(maxX); cellX++) {
+            for (int cellZ = toCell(minZ); cellZ <= toCell(maxZ); cellZ++) {
+                Set<ModeledEntity> cell = cells.get(cellKey(cellX, cellZ));
+                if (cell == null) continue;
+                for (ModeledEntity entity : cell) {
+                    if (seen.add(entity)) candidates.add(entity);
+                }
+            }
+        }
+    }
+
+    public static boolean hasEntities(World world) {
+        Map<Long, Set<ModeledEntity>> cells = worlds.get(world.getUID());
+        return cells != null && !cells.isEmpty();
+    }
+
+    /**
+     * Collects the entities in every cell a ray passes over, walking the cells with a 2D DDA.
+     * Entities spanning several cells are only listed once.
+     * The direction doesn't have to be normalized, maxDistance is measured in lengths of it, so a segment can be passed
+     * as its delta with a distance of 1.
+     */
+    public static List<ModeledEntity> getEntitiesAlongRay(World world, double originX, double originZ,
+                                                          double directionX, double directionZ, double maxDistance) {
+        List<ModeledEntity> candidates = new ArrayList<>();
+        collectEntitiesAlongRay(world, originX, originZ, directionX, directionZ, maxDistance,
+                candidates, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return candidates;
+    }
+
+    /**
+     * Same as {@link #getEntitiesAlongRay}, but adds to buffers the caller can reuse
+     *
+     * @param candidates List the entities are added to
+     * @param seen       Entities already in the list, used to skip duplicates
+     */
+    public static void collectEntitiesAlongRay(World world, double originX, double originZ,
+                                               double directionX, double directionZ, double maxDistance,
+                                               List<ModeledEntity> candidates, Set<ModeledEntity> seen) {
+        Map<Long, Set<ModeledEntity>> cells = worlds.get(world.getUID());
+        if (cells == null || cells.isEmpty()) return;
+        int cellX = toCell(originX);
+        int cellZ = toCell(originZ);
+        int endCellX = toCell(originX + directionX * maxDistance);
+        int endCellZ = toCell(originZ + directionZ * maxDistance);
+        int stepX = Integer.signum(endCellX - cellX);
+        int stepZ = Integer.signum(endCellZ - cellZ);
+        double tDeltaX = stepX != 0 ? Math.abs(CELL_SIZE / directionX) : Double.MAX_VALUE;
+        double tDeltaZ = stepZ != 0 ? Math.abs(CELL_SIZE / directionZ) : Double.MAX_VALUE;
+        double tMaxX = stepX > 0 ? ((cellX + 1) * CELL_SIZE - originX) / directionX
+                : stepX < 0 ? (originX - cellX * CELL_SIZE) / -directionX : Double.MAX_VALUE;
+        double tMaxZ = stepZ > 0 ? ((cellZ + 1) * CELL_SIZE - originZ) / directionZ
+                : stepZ < 0 ? (originZ - cellZ * CELL_SIZE) / -directionZ : Double.MAX_VALUE;
+        int remainingSteps = Math.abs(endCellX - cellX) + Math.abs(endCellZ - cellZ);
+        while (true) {
+            Set<ModeledEntity> cell = cells.get(cellKey(cellX, cellZ));
+            if (cell != null) {
+                for (ModeledEntity entity : cell) {
+                    if (seen.add(entity)) candidates.add(entity);
+                }
+            }
+            if (remainingSteps-- <= 0) return;
+            if (tMaxX < tMaxZ) {
+                cellX += stepX;
+                tMaxX += tDeltaX;
+            } else {
+                cellZ += stepZ;
+                tMaxZ += tDeltaZ;
+            }
+        }
+    }
+
+    // Only called under the lock, so no other thread can add to a cell between it emptying and being dropped
+    private static void removeFromCells(ModeledEntity entity, Footprint footprint) {
+        Map<Long, Set<ModeledEntity>> cells = worlds.get(footprint.worldId);
+        if (cells == null) return;
+        for (int cellX = footprint.minCellX; cellX <= footprint.maxCellX; cellX++) {
+            for (int cellZ = footprint.minCellZ; cellZ <= footprint.maxCellZ; cellZ++) {
+                long key = cellKey(cellX, cellZ);
+                Set<ModeledEntity> cell = cells.get(key);
+                if (cell == null) continue;
+                cell.remove(entity);
+                if (cell.isEmpty()) cells.remove(key, cell);
+            }
+        }
+    }
+
+    private static int toCell(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_SHIFT;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+}
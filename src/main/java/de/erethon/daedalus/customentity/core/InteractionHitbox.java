@@ -0,0 +1,120 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.config.DefaultConfig;
+import de.erethon.daedalus.customentity.ModeledEntity;
+import de.erethon.daedalus.customentity.PropEntity;
+import de.erethon.daedalus.packets.PacketInteractionEntity;
+import com.destroystokyo.paper.event.player.PlayerUseUnknownEntityEvent;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.util.BoundingBox;
+import org.joml.Vector3d;
+
+import java.util.List;
+
+/**
+ * Lets the client do the hit detection for a model. An invisible interaction entity the size of the model's hitbox is
+ * spawned with the bones, and the attack and interact packets the client sends for it are mapped back to the model by
+ * entity id through the {@link ModeledEntityIndex}, without any server side ray cast.
+ * Interaction entities can't rotate, so the box covers the hitbox for any yaw.
+ * The client's entity id isn't trusted on its own: the player has to see the model, be in its world and aim at the
+ * box within reach, as Paper runs no checks for entities it doesn't know.
+ */
+public class InteractionHitbox {
+
+    private final ModeledEntity modeledEntity;
+    // How much further than the box a click may land, for the model moving while the packet was on its way
+    private static final double REACH_MARGIN = 1.0;
+
+    private final PacketInteractionEntity interactionEntity;
+    private double lastX, lastY, lastZ;
+    private double halfWidth, height;
+
+    public InteractionHitbox(ModeledEntity modeledEntity, Location location) {
+        this.modeledEntity = modeledEntity;
+        this.interactionEntity = new PacketInteractionEntity(location);
+        interactionEntity.setViewers(modeledEntity.getSkeleton().getSkeletonWatchers().getViewerSet());
+        ModeledEntityIndex.registerEntityId(interactionEntity.getEntityId(), modeledEntity);
+    }
+
+    /**
+     * Moves and resizes the interaction entity to match the hitbox, nothing is sent if neither changed
+     */
+    public void update(OrientedBoundingBox obb) {
+        Vector3d center = obb.getCenter();
+        Vector3d halfExtents = obb.getHalfExtents();
+        // The interaction entity stands on its position and is a square footprint
+        float width = (float) (2 * Math.sqrt(halfExtents.x * halfExtents.x + halfExtents.z * halfExtents.z));
+        float height = (float) (2 * halfExtents.y);
+        interactionEntity.setSize(width, height);
+        this.halfWidth = width / 2d;
+        this.height = height;
+        double y = center.y - halfExtents.y;
+        if (center.x == lastX && y == lastY && center.z == lastZ) return;
+        lastX = center.x;
+        lastY = y;
+        lastZ = center.z;
+        interactionEntity.teleport(center.x, y, center.z);
+    }
+
+    /**
+     * Checks that the look ray of a player hits the interaction box within a distance
+     */
+    public boolean isInReach(Player player, double range) {
+        BoundingBox box = new BoundingBox(lastX - halfWidth, lastY, lastZ - halfWidth,
+                lastX + halfWidth, lastY + height, lastZ + halfWidth).expand(REACH_MARGIN);
+        Location eyeLocation = player.getEyeLocation();
+        if (box.contains(eyeLocation.toVector())) return true;
+        return box.rayTrace(eyeLocation.toVector(), eyeLocation.getDirection(), range) != null;
+    }
+
+    public void collectSpawnPackets(List<Packet<? super ClientGamePacketListener>> packets) {
+        interactionEntity.collectSpawnPackets(packets);
+    }
+
+    public int getEntityId() {
+        return interactionEntity.getEntityId();
+    }
+
+    /**
+     * Unregisters the entity id, the skeleton sends the remove packet together with the bones
+     */
+    public void remove() {
+        interactionEntity.markRemoved();
+        ModeledEntityIndex.unregisterEntityId(interactionEntity.getEntityId());
+    }
+
+    public static class InteractionHitboxEvents implements Listener {
+        @EventHandler
+        public void onUseUnknownEntity(PlayerUseUnknownEntityEvent event) {
+            ModeledEntity modeledEntity = ModeledEntityIndex.get(event.getEntityId());
+            if (modeledEntity == null || modeledEntity.isRemoved()) return;
+            if (!isValidTarget(event.getPlayer(), modeledEntity)) return;
+            if (event.isAttack()) {
+                modeledEntity.getInteractionComponent().callLeftClickEvent(event.getPlayer());
+                modeledEntity.damage(event.getPlayer());
+                return;
+            }
+            // Right clicks arrive once per hand, and once more with the clicked position for the main hand
+            if (event.getHand() != EquipmentSlot.HAND || event.getClickedRelativePosition() != null) return;
+            modeledEntity.getInteractionComponent().callRightClickEvent(event.getPlayer());
+        }
+
+        // Same reach as the server side ray cast this replaces
+        private static boolean isValidTarget(Player player, ModeledEntity modeledEntity) {
+            InteractionHitbox interactionHitbox = modeledEntity.getSkeleton().getInteractionHitbox();
+            if (interactionHitbox == null) return false;
+            if (!player.getWorld().equals(modeledEntity.getWorld())) return false;
+            if (!modeledEntity.getSkeleton().getSkeletonWatchers().isViewer(player.getUniqueId())) return false;
+            double range = modeledEntity instanceof PropEntity
+                    ? DefaultConfig.maxInteractionAndAttackDistanceForProps
+                    : DefaultConfig.maxInteractionAndAttackDistanceForLivingEntities;
+            return interactionHitbox.isInReach(player, range);
+        }
+    }
+}
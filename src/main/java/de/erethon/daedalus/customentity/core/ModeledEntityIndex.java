@@ -0,0 +1,117 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.customentity.ModeledEntity;
+import de.erethon.daedalus.customentity.PropEntity;
+import org.bukkit.entity.Entity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory lookup from entities to the modeled entities they belong to, by UUID and by entity id.
+ * Damage and interact events hit this on every event, so it replaces reading the persistent data container, which is
+ * only kept for persistence. Underlying entities are added when a model gets one and removed with the model, packet
+ * entities that stand for a model, such as interaction hitboxes, can be added by entity id alone.
+ * Props are also indexed by the chunk their armor stand is in, so a chunk unload only visits its own props.
+ */
+public class ModeledEntityIndex {
+
+    private static final Map<UUID, ModeledEntity> byUUID = new ConcurrentHashMap<>();
+    private static final Map<Integer, ModeledEntity> byEntityId = new ConcurrentHashMap<>();
+    private static final Map<UUID, PropEntity> props = new ConcurrentHashMap<>();
+    private static final Map<UUID, PropEntity> propsView = Collections.unmodifiableMap(props);
+    private static final Map<String, Set<PropEntity>> propsByChunk = new ConcurrentHashMap<>();
+
+    private ModeledEntityIndex() {
+    }
+
+    public static void register(Entity entity, ModeledEntity modeledEntity) {
+        byUUID.put(entity.getUniqueId(), modeledEntity);
+        byEntityId.put(entity.getEntityId(), modeledEntity);
+        if (modeledEntity instanceof PropEntity propEntity) {
+            props.put(entity.getUniqueId(), propEntity);
+            propsByChunk.compute(chunkKey(entity), (key, chunkProps) -> {
+                if (chunkProps == null) chunkProps = ConcurrentHashMap.newKeySet();
+                chunkProps.add(propEntity);
+                return chunkProps;
+            });
+        }
+    }
+
+    /**
+     * Removes the entity, unless it was taken over by another model in the meantime
+     */
+    public static void unregister(Entity entity, ModeledEntity modeledEntity) {
+        byUUID.remove(entity.getUniqueId(), modeledEntity);
+        byEntityId.remove(entity.getEntityId(), modeledEntity);
+        if (modeledEntity instanceof PropEntity propEntity && props.remove(entity.getUniqueId(), propEntity)) {
+            propsByChunk.computeIfPresent(chunkKey(entity), (key, chunkProps) -> {
+                chunkProps.remove(propEntity);
+                return chunkProps.isEmpty() ? null : chunkProps;
+            });
+        }
+    }
+
+    private static String chunkKey(Entity entity) {
+        return PropEntity.chunkToString(entity.getLocation().getChunk());
+    }
+
+    public static void registerEntityId(int entityId, ModeledEntity modeledEntity) {
+        byEntityId.put(entityId, modeledEntity);
+    }
+
+    public static void unregisterEntityId(int entityId) {
+        byEntityId.remove(entityId);
+    }
+
+    public static ModeledEntity get(Entity entity) {
+        return byUUID.get(entity.getUniqueId());
+    }
+
+    public static ModeledEntity get(UUID uuid) {
+        return byUUID.get(uuid);
+    }
+
+    public static ModeledEntity get(int entityId) {
+        return byEntityId.get(entityId);
+    }
+
+    public static boolean contains(Entity entity) {
+        return byUUID.containsKey(entity.getUniqueId());
+    }
+
+    /**
+     * Gets every modeled entity that has an underlying entity
+     */
+    public static Collection<ModeledEntity> getAll() {
+        return byUUID.values();
+    }
+
+    /**
+     * Gets the loaded props by the UUID of their armor stand, as a read-only view
+     */
+    public static Map<UUID, PropEntity> getProps() {
+        return propsView;
+    }
+
+    /**
+     * Gets the props whose armor stand is in a chunk
+     *
+     * @param chunkKey key of the chunk, see {@link PropEntity#chunkToString}
+     */
+    public static Collection<PropEntity> getPropsInChunk(String chunkKey) {
+        Set<PropEntity> chunkProps = propsByChunk.get(chunkKey);
+        return chunkProps == null ? Collections.emptySet() : chunkProps;
+    }
+
+    public static void shutdown() {
+        byUUID.clear();
+        byEntityId.clear();
+        props.clear();
+        propsByChunk.clear();
+    }
+}
@@ -1,9 +1,12 @@
 package de.erethon.daedalus.customentity.core;
 
 import de.erethon.daedalus.MetadataHandler;
-import de.erethon.daedalus.api.ModeledEntityManager;
+import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.customentity.ModeledEntity;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.AbstractArrow;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.event.EventHandler;
@@ -17,10 +20,13 @@ import org.bukkit.event.player.PlayerAnimationEvent;
 import org.bukkit.event.player.PlayerAnimationType;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.projectiles.ProjectileSource;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handles hit detection for modeled entities using Oriented Bounding Boxes.
@@ -30,7 +36,8 @@ public class OBBHitDetection implements Listener {
 
     public static boolean applyDamage = false;
 
-    private static HashSet<Projectile> activeProjectiles = new HashSet<>();
+    // Weakly referenced so projectiles removed behind our back don't stay in memory until the next tick prunes them
+    private static final Map<UUID, TrackedProjectile> activeProjectiles = new ConcurrentHashMap<>();
     private static BukkitTask projectileDetectionTask = null;
 
     @EventHandler(priority = EventPriority.LOWEST)
@@ -72,35 +79,53 @@ public class OBBHitDetection implements Listener {
             public void run() {
                 processPendingAttacks();
 
-                Iterator<Projectile> iter = activeProjectiles.iterator();
+                Iterator<TrackedProjectile> iter = activeProjectiles.values().iterator();
                 while (iter.hasNext()) {
-                    Projectile proj = iter.next();
+                    TrackedProjectile tracked = iter.next();
+                    Projectile proj = tracked.projectile.get();
 
-                    // 1) drop invalid projectiles
-                    if (!proj.isValid()) {
+                    // 1) drop projectiles that died, got unloaded or got stuck
+                    if (proj == null || !proj.isValid() ||
+                            proj instanceof AbstractArrow arrow && arrow.isInBlock()) {
                         iter.remove();
                         continue;
                     }
 
-                    // 2) scan against every modeled entity in the same world
-                    for (ModeledEntity entity : ModeledEntityManager.getAllEntities()) {
-                        if (entity.getWorld() == null ||
-                                !entity.getWorld().equals(proj.getWorld())) {
-                            continue;
-                        }
+                    Location projLocation = proj.getLocation();
+                    World world = projLocation.getWorld();
+                    if (world == null || !world.getUID().equals(tracked.worldId)) {
+                        tracked.moveTo(projLocation);
+                        continue;
+                    }
+
+                    // 2) sweep the path since last tick against the modeled entities in the grid cells it crosses
+                    double deltaX = projLocation.getX() - tracked.lastX;
+                    double deltaZ = projLocation.getZ() - tracked.lastZ;
+                    ModeledEntity closestEntity = null;
+                    double closestFraction = Double.MAX_VALUE;
+                    ProjectileSource shooter = proj.getShooter();
+                    for (ModeledEntity entity : HitboxGrid.getEntitiesAlongRay(world, tracked.lastX, tracked.lastZ, deltaX, deltaZ, 1)) {
+                        if (entity.isRemoved() || entity.getWorld() == null) continue;
+                        // The first sweep starts inside the shooter's own model, which would hide anything behind it
+                        if (shooter != null && shooter.equals(entity.getUnderlyingEntity())) continue;
 
                         // update the OBB to the entity's current position/orientation
-                        OrientedBoundingBox obb = entity.getHitboxComponent().getObbHitbox().update(entity.getLocation());
-                        if (obb.containsPoint(proj.getLocation())) {
-                            // hit! deal damage and stop scanning this projectile
-                            if (!entity.damage(proj)) break;
-
-                            // remove it from our set so we don't double‐hit
-                            iter.remove();
-                            proj.remove();
-                            break;
+                        entity.getHitboxComponent().getObbHitbox().update(entity.getLocation());
+                        double fraction = entity.getHitboxComponent().segmentIntersection(tracked.lastX, tracked.lastY, tracked.lastZ,
+                                projLocation.getX(), projLocation.getY(), projLocation.getZ());
+                        if (fraction >= 0 && fraction < closestFraction) {
+                            closestEntity = entity;
+                            closestFraction = fraction;
                         }
                     }
+
+                    // hit! deal damage and stop tracking the projectile so we don't double-hit
+                    if (closestEntity != null && closestEntity.damage(proj)) {
+                        iter.remove();
+                        proj.remove();
+                        continue;
+                    }
+                    tracked.moveTo(projLocation);
                 }
             }
         }.runTaskTimer(MetadataHandler.PLUGIN, 0L, 1L);
@@ -117,6 +142,9 @@ public class OBBHitDetection implements Listener {
 
     @EventHandler(priority = EventPriority.HIGHEST)
     public void playerAnimation(PlayerAnimationEvent event) {
+        // The client reports hits on the interaction entities itself
+        if (DefaultConfig.clientSideHitDetection) return;
+
         // Only process arm swings (attacks)
         if (!event.getAnimationType().equals(PlayerAnimationType.ARM_SWING)) {
             return;
@@ -138,6 +166,8 @@ public class OBBHitDetection implements Listener {
 
     @EventHandler
     public void EntityInteractEvent(PlayerInteractEvent event) {
+        if (DefaultConfig.clientSideHitDetection) return;
+
         // Only process right-click actions (both air and block)
         if (event.getAction() != Action.RIGHT_CLICK_AIR &&
                 event.getAction() != Action.RIGHT_CLICK_BLOCK) {
@@ -216,7 +246,30 @@ public class OBBHitDetection implements Listener {
 
     @EventHandler
     public void onProjectileCreate(ProjectileLaunchEvent event) {
-        activeProjectiles.add(event.getEntity());
+        activeProjectiles.put(event.getEntity().getUniqueId(), new TrackedProjectile(event.getEntity()));
+    }
+
+    /**
+     * A projectile with its position from the last tick, the path in between is what gets tested for hits
+     */
+    private static final class TrackedProjectile {
+        private final WeakReference<Projectile> projectile;
+        private UUID worldId;
+        private double lastX;
+        private double lastY;
+        private double lastZ;
+
+        private TrackedProjectile(Projectile projectile) {
+            this.projectile = new WeakReference<>(projectile);
+            moveTo(projectile.getLocation());
+        }
+
+        private void moveTo(Location location) {
+            worldId = location.getWorld() != null ? location.getWorld().getUID() : null;
+            lastX = location.getX();
+            lastY = location.getY();
+            lastZ = location.getZ();
+        }
     }
 
 }
\ No newline at end of file
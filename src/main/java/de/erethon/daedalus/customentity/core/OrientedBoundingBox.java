@@ -1,12 +1,13 @@
 package de.erethon.daedalus.customentity.core;
 
 import de.erethon.daedalus.MetadataHandler;
-import de.erethon.daedalus.api.ModeledEntityManager;
 import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.customentity.ModeledEntity;
 import de.erethon.daedalus.customentity.PropEntity;
+import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.Particle;
+import org.bukkit.World;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
@@ -17,7 +18,7 @@ import org.joml.Matrix3d;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
 
-import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -48,9 +49,6 @@ public class OrientedBoundingBox {
     private final Vector3d rightTemp = new Vector3d();
     private final Vector3d upTemp = new Vector3d();
     private final Vector3d forwardTemp = new Vector3d();
-    // Reusable vectors for ray intersection
-    private final Vector3d localOriginCache = new Vector3d();
-    private final Vector3d localDirCache = new Vector3d();
     private final double height;
     // Current scale modifier
     private double scaleModifier = 1.0;
@@ -197,12 +195,13 @@ public class OrientedBoundingBox {
     public static Optional<ModeledEntity> raytraceFromPoint(
             String worldName, Location location, float maxDistance) {
 
-        // Get all modeled entities
-        HashSet<ModeledEntity> entities = ModeledEntityManager.getAllEntities();
+        World world = Bukkit.getWorld(worldName);
+        if (world == null) return Optional.empty();
 
-        // Filter entities to only include those in the same world
-        entities.removeIf(entity -> entity.getWorld() == null ||
-                !entity.getWorld().getName().equals(worldName));
+        // Only entities whose hitbox lies in a grid cell along the ray can be hit
+        Vector direction = location.getDirection();
+        List<ModeledEntity> entities = HitboxGrid.getEntitiesAlongRay(world,
+                location.getX(), location.getZ(), direction.getX(), direction.getZ(), maxDistance);
 
         if (entities.isEmpty()) {
             return Optional.empty();
@@ -214,11 +213,9 @@ public class OrientedBoundingBox {
 
         // Check each entity for intersection
         for (ModeledEntity entity : entities) {
-            // Get a fresh OBB for the entity every time
-            OrientedBoundingBox obb = entity.getHitboxComponent().getObbHitbox();
-
-            // Check for ray intersection
-            double distance = obb.rayIntersection(location, maxDistance);
+            if (entity.isRemoved()) continue;
+            // Check for ray intersection, against the bone hitboxes if the entity has them
+            double distance = entity.getHitboxComponent().rayIntersection(location, maxDistance);
 
             // If there's an intersection and it's closer than any previous hit
             if (distance > 0 && distance < closestDistance) {
@@ -397,24 +394,37 @@ public class OrientedBoundingBox {
      * @return The distance to the intersection point, or -1 if no intersection
      */
     public double rayIntersection(Location eyeLocation, double maxDistance) {
+        Vector dir = eyeLocation.getDirection();
+        return rayIntersection(eyeLocation.getX(), eyeLocation.getY(), eyeLocation.getZ(),
+                dir.getX(), dir.getY(), dir.getZ(), maxDistance);
+    }
+
+    /**
+     * Checks if a ray intersects with this OBB, without allocating anything
+     *
+     * @param maxDistance The maximum distance to check, in lengths of the direction
+     * @return The distance to the intersection point, or -1 if no intersection
+     */
+    public double rayIntersection(double originX, double originY, double originZ,
+                                  double directionX, double directionY, double directionZ, double maxDistance) {
         // Ensure scale and inverse rotation are up to date
         updateScale();
         updateHalfExtents();
         updateInverseRotation();
 
-        // Set the local origin cache directly from the eye location
-        localOriginCache.set(eyeLocation.getX(), eyeLocation.getY(), eyeLocation.getZ());
-
-        // Get direction vector from the location and set the local direction cache
-        Vector dir = eyeLocation.getDirection();
-        localDirCache.set(dir.getX(), dir.getY(), dir.getZ());
-
         // Transform origin to local space
-        Vector3d tempOrigin = localOriginCache.sub(center);
-        tempOrigin.mul(inverseRotation);
+        double relativeX = originX - center.x;
+        double relativeY = originY - center.y;
+        double relativeZ = originZ - center.z;
+        Matrix3d m = inverseRotation;
+        double localOriginX = m.m00 * relativeX + m.m10 * relativeY + m.m20 * relativeZ;
+        double localOriginY = m.m01 * relativeX + m.m11 * relativeY + m.m21 * relativeZ;
+        double localOriginZ = m.m02 * relativeX + m.m12 * relativeY + m.m22 * relativeZ;
 
         // Transform direction to local space (rotation only, no translation)
-        localDirCache.mul(inverseRotation);
+        double localDirX = m.m00 * directionX + m.m10 * directionY + m.m20 * directionZ;
+        double localDirY = m.m01 * directionX + m.m11 * directionY + m.m21 * directionZ;
+        double localDirZ = m.m02 * directionX + m.m12 * directionY + m.m22 * directionZ;
 
         // Standard AABB-ray intersection in local space using scaled half extents
         double tMin = -Double.MAX_VALUE;
@@ -422,8 +432,8 @@ public class OrientedBoundingBox {
 
         // For each axis
         for (int i = 0; i < 3; i++) {
-            double d = localDirCache.get(i);
-            double o = tempOrigin.get(i);
+            double d = i == 0 ? localDirX : i == 1 ? localDirY : localDirZ;
+            double o = i == 0 ? localOriginX : i == 1 ? localOriginY : localOriginZ;
             double e = halfExtents.get(i); // Use scaled half extents
 
             // Check if ray is parallel to slab
@@ -463,6 +473,111 @@ public class OrientedBoundingBox {
         return tMin > 0 ? tMin : tMax;
     }
 
+    /**
+     * Sweeps a segment through this OBB, used for projectiles so fast ones can't pass through between two ticks.
+     *
+     * @return The fraction of the segment at which it enters the box, 0 if it starts inside, or -1 if it misses
+     */
+    public double segmentIntersection(double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        updateScale();
+        updateHalfExtents();
+        updateInverseRotation();
+
+        // Local copies instead of the ray caches, projectiles and ray casts can run at the same time
+        Vector3d origin = new Vector3d(fromX, fromY, fromZ).sub(center).mul(inverseRotation);
+        Vector3d delta = new Vector3d(toX - fromX, toY - fromY, toZ - fromZ).mul(inverseRotation);
+
+        double tMin = 0;
+        double tMax = 1;
+        for (int i = 0; i < 3; i++) {
+            double d = delta.get(i);
+            double o = origin.get(i);
+            double e = halfExtents.get(i);
+            if (Math.abs(d) < 1e-9) {
+                if (o > e || o < -e) return -1;
+                continue;
+            }
+            double t1 = (-e - o) / d;
+            double t2 = (e - o) / d;
+            if (t1 > t2) {
+                double temp = t1;
+                t1 = t2;
+                t2 = temp;
+            }
+            tMin = Math.max(tMin, t1);
+            tMax = Math.min(tMax, t2);
+            if (tMax < tMin) return -1;
+        }
+        return tMin;
+    }
+
+    /**
+     * Checks whether a sphere touches this OBB, by clamping its center onto the box in local space
+     */
+    public boolean intersectsSphere(double x, double y, double z, double radius) {
+        updateScale();
+        updateHalfExtents();
+        updateInverseRotation();
+
+        double relativeX = x - center.x;
+        double relativeY = y - center.y;
+        double relativeZ = z - center.z;
+        Matrix3d m = inverseRotation;
+        double localX = m.m00 * relativeX + m.m10 * relativeY + m.m20 * relativeZ;
+        double localY = m.m01 * relativeX + m.m11 * relativeY + m.m21 * relativeZ;
+        double localZ = m.m02 * relativeX + m.m12 * relativeY + m.m22 * relativeZ;
+
+        double outsideX = Math.max(Math.abs(localX) - halfExtents.x, 0);
+        double outsideY = Math.max(Math.abs(localY) - halfExtents.y, 0);
+        double outsideZ = Math.max(Math.abs(localZ) - halfExtents.z, 0);
+        return outsideX * outsideX + outsideY * outsideY + outsideZ * outsideZ <= radius * radius;
+    }
+
+    /**
+     * Separating axis test against an axis-aligned box, exact for any rotation of this box
+     */
+    public boolean intersectsAABB(BoundingBox aabb) {
+        updateScale();
+        updateHalfExtents();
+
+        double[] a = {aabb.getWidthX() / 2, aabb.getHeight() / 2, aabb.getWidthZ() / 2};
+        double[] b = {halfExtents.x, halfExtents.y, halfExtents.z};
+        double[] t = {center.x - aabb.getCenterX(), center.y - aabb.getCenterY(), center.z - aabb.getCenterZ()};
+        // r[i][j] is world axis i dotted with the local axis j of this box
+        double[][] r = new double[3][3];
+        double[][] absR = new double[3][3];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                r[i][j] = rotation.get(j, i);
+                // Keeps near parallel edges from producing a degenerate cross product axis
+                absR[i][j] = Math.abs(r[i][j]) + 1e-9;
+            }
+        }
+
+        // Axes of the AABB
+        for (int i = 0; i < 3; i++) {
+            if (Math.abs(t[i]) > a[i] + b[0] * absR[i][0] + b[1] * absR[i][1] + b[2] * absR[i][2]) return false;
+        }
+        // Axes of this box
+        for (int j = 0; j < 3; j++) {
+            double projected = t[0] * r[0][j] + t[1] * r[1][j] + t[2] * r[2][j];
+            if (Math.abs(projected) > a[0] * absR[0][j] + a[1] * absR[1][j] + a[2] * absR[2][j] + b[j]) return false;
+        }
+        // Cross products of one axis of each
+        for (int i = 0; i < 3; i++) {
+            int i1 = (i + 1) % 3;
+            int i2 = (i + 2) % 3;
+            for (int j = 0; j < 3; j++) {
+                int j1 = (j + 1) % 3;
+                int j2 = (j + 2) % 3;
+                double radiusA = a[i1] * absR[i2][j] + a[i2] * absR[i1][j];
+                double radiusB = b[j1] * absR[i][j2] + b[j2] * absR[i][j1];
+                if (Math.abs(t[i2] * r[i1][j] - t[i1] * r[i2][j]) > radiusA + radiusB) return false;
+            }
+        }
+        return true;
+    }
+
     public boolean isAABBCollidingWithOBB(BoundingBox aabb, OrientedBoundingBox obb) {
         // Ensure both OBBs have updated scale
         updateHalfExtents();
@@ -0,0 +1,230 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.MetadataHandler;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-world grid of player positions, bucketed by chunk.
+ * The grid is rebuilt once per tick on the main thread and published as an immutable snapshot,
+ * so the skeletons ticking on the worker threads can look up nearby players without touching the world's player list.
+ * Each snapshot also carries the players that moved enough to need their visibility re-evaluated.
+ */
+public class PlayerSpatialIndex {
+
+    private static volatile Snapshot snapshot = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet());
+    // Players whose visibility has to be re-evaluated, collected by the events until the next rebuild
+    private static final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+    private static BukkitTask rebuildTask = null;
+    private static long sequence = 0;
+
+    private PlayerSpatialIndex() {
+    }
+
+    public static void start() {
+        rebuild();
+        rebuildTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        }.runTaskTimer(MetadataHandler.PLUGIN, 1, 1);
+    }
+
+    public static void shutdown() {
+        if (rebuildTask != null) rebuildTask.cancel();
+        rebuildTask = null;
+        snapshot = new Snapshot(0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptySet());
+        dirtyPlayers.clear();
+    }
+
+    /**
+     * Flags a player so every skeleton near them re-evaluates their visibility on the next snapshot
+     */
+    public static void markDirty(UUID player) {
+        dirtyPlayers.add(player);
+    }
+
+    /**
+     * Gets the latest snapshot, which never changes once published
+     */
+    public static Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private static void rebuild() {
+        Map<UUID, Long2ObjectMap<List<PlayerSnapshot>>> worlds = new HashMap<>();
+        Map<UUID, PlayerSnapshot> players = new HashMap<>();
+        for (World world : Bukkit.getWorlds()) {
+            List<Player> worldPlayers = world.getPlayers();
+            if (worldPlayers.isEmpty()) continue;
+            Long2ObjectMap<List<PlayerSnapshot>> cells = new Long2ObjectOpenHashMap<>();
+            for (Player player : worldPlayers) {
+                PlayerSnapshot playerSnapshot = new PlayerSnapshot(ViewerRegistry.getSession(player), player.getLocation(), player.getEyeLocation());
+                cells.computeIfAbsent(cellKey(toCell(playerSnapshot.x()), toCell(playerSnapshot.z())), k -> new ArrayList<>(2)).add(playerSnapshot);
+                players.put(playerSnapshot.uuid(), playerSnapshot);
+            }
+            worlds.put(world.getUID(), cells);
+        }
+        Set<UUID> dirty = new HashSet<>(dirtyPlayers);
+        dirtyPlayers.removeAll(dirty);
+        snapshot = new Snapshot(++sequence, worlds, players, dirty);
+    }
+
+    private static int toCell(double coordinate) {
+        return (int) Math.floor(coordinate) >> 4;
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Immutable copy of a player's position and view at the time the snapshot was taken
+     */
+    public record PlayerSnapshot(ViewerSession session, Player player, UUID uuid, World world, double x, double y, double z,
+                                 double eyeX, double eyeY, double eyeZ, float yaw, float pitch) {
+
+        private PlayerSnapshot(ViewerSession session, Location location, Location eyeLocation) {
+            this(session, session.getPlayer(), session.getUUID(), location.getWorld(), location.getX(), location.getY(), location.getZ(),
+                    eyeLocation.getX(), eyeLocation.getY(), eyeLocation.getZ(), eyeLocation.getYaw(), eyeLocation.getPitch());
+        }
+
+        public double distanceSquared(double x, double y, double z) {
+            double dx = this.x - x;
+            double dy = this.y - y;
+            double dz = this.z - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        public Location getEyeLocation() {
+            return new Location(world, eyeX, eyeY, eyeZ, yaw, pitch);
+        }
+    }
+
+    public static final class Snapshot {
+        private final long sequence;
+        private final Map<UUID, Long2ObjectMap<List<PlayerSnapshot>>> worlds;
+        private final Map<UUID, PlayerSnapshot> players;
+        private final Set<UUID> dirtyPlayers;
+
+        private Snapshot(long sequence, Map<UUID, Long2ObjectMap<List<PlayerSnapshot>>> worlds, Map<UUID, PlayerSnapshot> players, Set<UUID> dirtyPlayers) {
+            this.sequence = sequence;
+            this.worlds = worlds;
+            this.players = players;
+            this.dirtyPlayers = dirtyPlayers;
+        }
+
+        /**
+         * Runs the consumer for every player in the chunks overlapping the range around a point.
+         * This is a coarse filter, callers still have to check the exact distance.
+         */
+        public void forEachPlayerNear(World world, double x, double z, double range, Consumer<PlayerSnapshot> consumer) {
+            Long2ObjectMap<List<PlayerSnapshot>> cells = worlds.get(world.getUID());
+            if (cells == null) return;
+            int minCellX = toCell(x - range);
+            int maxCellX = toCell(x + range);
+            int minCellZ = toCell(z - range);
+            int maxCellZ = toCell(z + range);
+            for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (int cellZ = minCellZ; cellZ <= maxCellZ; cellZ++) {
+                    List<PlayerSnapshot> cell = cells.get(cellKey(cellX, cellZ));
+                    if (cell == null) continue;
+                    for (PlayerSnapshot playerSnapshot : cell) {
+                        consumer.accept(playerSnapshot);
+                    }
+                }
+            }
+        }
+
+        public PlayerSnapshot getPlayer(UUID uuid) {
+            return players.get(uuid);
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Players that crossed a chunk, moved or turned far, teleported, changed worlds or joined since the previous snapshot
+         */
+        public Set<UUID> getDirtyPlayers() {
+            return dirtyPlayers;
+        }
+    }
+
+    public static class PlayerMovementEvents implements Listener {
+
+        private static final double MOVE_THRESHOLD_SQUARED = 4 * 4;
+        // Turning this far can bring models into or out of view
+        private static final float ROTATION_THRESHOLD = 30;
+        private final Map<UUID, Location> lastMarkedLocations = new HashMap<>();
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onPlayerMove(PlayerMoveEvent event) {
+            Location to = event.getTo();
+            Location from = event.getFrom();
+            Location lastMarked = lastMarkedLocations.get(event.getPlayer().getUniqueId());
+            boolean crossedChunk = to.getBlockX() >> 4 != from.getBlockX() >> 4 || to.getBlockZ() >> 4 != from.getBlockZ() >> 4;
+            if (crossedChunk || lastMarked == null || lastMarked.getWorld() != to.getWorld() || lastMarked.distanceSquared(to) > MOVE_THRESHOLD_SQUARED
+                    || hasTurned(lastMarked, to)) {
+                mark(event.getPlayer(), to);
+            }
+        }
+
+        private static boolean hasTurned(Location from, Location to) {
+            return Math.abs(Location.normalizeYaw(to.getYaw() - from.getYaw())) > ROTATION_THRESHOLD
+                    || Math.abs(to.getPitch() - from.getPitch()) > ROTATION_THRESHOLD;
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onPlayerTeleport(PlayerTeleportEvent event) {
+            mark(event.getPlayer(), event.getTo());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+            mark(event.getPlayer(), event.getPlayer().getLocation());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerJoin(PlayerJoinEvent event) {
+            mark(event.getPlayer(), event.getPlayer().getLocation());
+        }
+
+        @EventHandler
+        public void onPlayerQuit(PlayerQuitEvent event) {
+            lastMarkedLocations.remove(event.getPlayer().getUniqueId());
+        }
+
+        private void mark(Player player, Location location) {
+            lastMarkedLocations.put(player.getUniqueId(), location.clone());
+            markDirty(player.getUniqueId());
+        }
+    }
+}
@@ -22,10 +22,13 @@ public class RegisterModelEntity {
     }
 
     public static boolean isModelArmorStand(Entity entity) {
-        return entity.getPersistentDataContainer().getKeys().contains(ARMOR_STAND_KEY);
+        return entity.getPersistentDataContainer().has(ARMOR_STAND_KEY);
     }
 
+    /**
+     * Checks whether the entity is the underlying entity of a loaded model, the persistent data is only for persistence
+     */
     public static boolean isModelEntity(Entity entity) {
-        return entity.getPersistentDataContainer().getKeys().contains(ENTITY_KEY);
+        return ModeledEntityIndex.contains(entity);
     }
 }
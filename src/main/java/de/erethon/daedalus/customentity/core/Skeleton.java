@@ -1,9 +1,14 @@
 package de.erethon.daedalus.customentity.core;
 
 import de.erethon.bedrock.chat.MessageUtil;
+import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.customentity.ModeledEntity;
 import de.erethon.daedalus.dataconverter.BoneBlueprint;
 import de.erethon.daedalus.dataconverter.SkeletonBlueprint;
+import de.erethon.daedalus.packets.BoneItemCache;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.network.protocol.game.ClientboundRemoveEntitiesPacket;
 import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.Particle;
@@ -19,6 +24,8 @@ public class Skeleton {
     private final List<BoneBlueprint> mainModel = new ArrayList<>();
     //In BlockBench models are referred to by name for animations, and names are unique
     private final HashMap<String, Bone> boneMap = new HashMap<>();
+    //Bones by the ordinal of their blueprint, for lookups that don't go through names
+    private final Bone[] bonesByOrdinal;
     private final SkeletonBlueprint skeletonBlueprint;
     private final SkeletonWatchers skeletonWatchers;
     private final List<Bone> nametags = new ArrayList<>();
@@ -30,10 +37,12 @@ public class Skeleton {
 //    private DynamicEntity dynamicEntity = null; //todo: this wasn't in use?
     private ModeledEntity modeledEntity = null;
     private Bone rootBone = null;
+    private InteractionHitbox interactionHitbox = null;
 
     public Skeleton(SkeletonBlueprint skeletonBlueprint, ModeledEntity modeledEntity) {
         this.skeletonBlueprint = skeletonBlueprint;
         this.modeledEntity = modeledEntity;
+        this.bonesByOrdinal = new Bone[skeletonBlueprint.getBoneCount()];
         skeletonBlueprint.getBoneMap().forEach((key, value) -> {
             if (value.getParent() == null) {
                 Bone bone = new Bone(value, null, this);
@@ -55,10 +64,35 @@ public class Skeleton {
         boneMap.values().forEach(bone -> {
             if (bone.getBoneBlueprint().isNameTag()) nametags.add(bone);
         });
+        if (DefaultConfig.clientSideHitDetection && getCurrentLocation() != null) {
+            interactionHitbox = new InteractionHitbox(modeledEntity, getCurrentLocation());
+            interactionHitbox.update(modeledEntity.getHitboxComponent().getObbHitbox());
+        }
     }
 
     public void remove() {
-        boneMap.values().forEach(Bone::remove);
+        skeletonWatchers.getViewerSet().send(new ClientboundRemoveEntitiesPacket(getBoneEntityIds()));
+        boneMap.values().forEach(Bone::markRemoved);
+        if (interactionHitbox != null) interactionHitbox.remove();
+        skeletonWatchers.remove();
+    }
+
+    /**
+     * Collects the packet entity ids of every bone, so the whole model can be despawned with one packet
+     */
+    public IntList getBoneEntityIds() {
+        IntList entityIds = new IntArrayList(boneMap.size());
+        boneMap.values().forEach(bone -> bone.collectEntityIds(entityIds));
+        if (interactionHitbox != null) entityIds.add(interactionHitbox.getEntityId());
+        return entityIds;
+    }
+
+    /**
+     * Gets the interaction entity the client hits instead of the model, null unless client side hit detection is on
+     */
+    @Nullable
+    public InteractionHitbox getInteractionHitbox() {
+        return interactionHitbox;
     }
 
     public List<Bone> getNametags() {
@@ -75,12 +109,30 @@ public class Skeleton {
      *
      * @return
      */
+    void registerBone(Bone bone) {
+        bonesByOrdinal[bone.getBoneBlueprint().getOrdinal()] = bone;
+    }
+
+    /**
+     * Gets the bone of a blueprint bone by its ordinal, null if the bone isn't part of this skeleton
+     */
+    @Nullable
+    public Bone getBone(int ordinal) {
+        return bonesByOrdinal[ordinal];
+    }
+
     public Collection<Bone> getBones() {
         return boneMap.values();
     }
 
     private boolean tinting = false;
     private int tintCounter = 0;
+    private boolean poseDirty = true;
+    private boolean moving = true;
+    private boolean hadObservers = false;
+    private int interpolationTicks = 1;
+    private double lastX, lastY, lastZ;
+    private float lastYaw, lastHeadYaw, lastHeadPitch;
 
     /**
      * This updates animations. The plugin runs this automatically, don't use it unless you know what you're doing!
@@ -94,8 +146,7 @@ public class Skeleton {
 
             if (tintCounter <= 10) {
                 // ramp from red back toward white
-                int gAndB = (int) (255 / (double) tintCounter);
-                Color tint = Color.fromRGB(255, gAndB, gAndB);
+                Color tint = BoneItemCache.DAMAGE_TINT[tintCounter - 1];
                 boneMap.values().forEach(b -> b.setHorseLeatherArmorColor(tint));
             } else {
                 // after frame 10, either keep poofing (if dying) or finish
@@ -115,9 +166,53 @@ public class Skeleton {
             }
         }
 
-        if (getSkeletonWatchers().hasObservers()) {
+        moving = updateMovement();
+        boolean hasObservers = getSkeletonWatchers().hasObservers();
+        // Bone hitboxes need the pose even if nobody sees the model
+        if (hasObservers && (poseDirty || moving || !hadObservers || !DefaultConfig.reducedRateAnimations)
+                || DefaultConfig.boneHitboxes && (poseDirty || moving)) {
+            if (moving) interpolationTicks = 1;
             rootBone.transform();
+            poseDirty = false;
         }
+        hadObservers = hasObservers;
+    }
+
+    // Any movement has to be sent every tick, the client can't interpolate it from the animation samples
+    private boolean updateMovement() {
+        Location location = getCurrentLocation();
+        if (location == null) return false;
+        boolean moved = location.getX() != lastX || location.getY() != lastY || location.getZ() != lastZ
+                || location.getYaw() != lastYaw || currentHeadYaw != lastHeadYaw || currentHeadPitch != lastHeadPitch;
+        lastX = location.getX();
+        lastY = location.getY();
+        lastZ = location.getZ();
+        lastYaw = location.getYaw();
+        lastHeadYaw = currentHeadYaw;
+        lastHeadPitch = currentHeadPitch;
+        return moved;
+    }
+
+    /**
+     * Flags the bones to be transformed and sent on the next tick
+     *
+     * @param interpolationTicks Ticks the client should take to interpolate to the new pose
+     */
+    public void markPoseDirty(int interpolationTicks) {
+        this.interpolationTicks = interpolationTicks;
+        poseDirty = true;
+    }
+
+    public void markPoseDirty() {
+        markPoseDirty(1);
+    }
+
+    public boolean isMoving() {
+        return moving;
+    }
+
+    public int getInterpolationTicks() {
+        return interpolationTicks;
     }
 
     public void tint() {
@@ -128,6 +223,8 @@ public class Skeleton {
 
     public void teleport() {
         rootBone.teleport();
+        // Once for the whole skeleton, not once per bone
+        skeletonWatchers.resync(true);
     }
 
     // Getters and Setters
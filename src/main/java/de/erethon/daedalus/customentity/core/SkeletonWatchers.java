@@ -4,30 +4,56 @@ import de.erethon.bedrock.chat.MessageUtil;
 import de.erethon.daedalus.MetadataHandler;
 import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.customentity.PropEntity;
-import de.erethon.daedalus.thirdparty.BedrockChecker;
-import org.bukkit.Bukkit;
-import org.bukkit.FluidCollisionMode;
+import de.erethon.daedalus.customentity.core.occlusion.OcclusionEngine;
+import de.erethon.daedalus.packets.ViewerSet;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import net.minecraft.network.protocol.BundlerInfo;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.ClientboundBundlePacket;
+import net.minecraft.network.protocol.game.ClientboundRemoveEntitiesPacket;
+import net.minecraft.server.level.ServerPlayer;
 import org.bukkit.Location;
-import org.bukkit.entity.Player;
+import org.bukkit.World;
 import org.bukkit.event.Listener;
 import org.bukkit.util.Vector;
 import org.joml.Vector3d;
 
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SkeletonWatchers implements Listener {
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+    private final int id = ID_COUNTER.incrementAndGet();
     private final Skeleton skeleton;
-    private final Set<UUID> viewers = new CopyOnWriteArraySet<>();
+    // Shared by every bone of the skeleton, this is the only place viewers are tracked
+    private final ViewerSet viewers = new ViewerSet();
 
     public HashSet<UUID> getViewers() {
-        return new HashSet<>(viewers);
+        return new HashSet<>(viewers.uuids());
+    }
+
+    public ViewerSet getViewerSet() {
+        return viewers;
+    }
+
+    public boolean isViewer(UUID uuid) {
+        return viewers.contains(uuid);
     }
 
     // Reused collections to avoid constant reallocation
-    private final List<UUID> newPlayers = new ArrayList<>();
+    private final Set<UUID> newPlayers = new HashSet<>();
     private final List<UUID> toRemove = new ArrayList<>();
+    // When viewers last saw the model leave their view, they keep it until the timeout runs out
+    private final Map<UUID, Long> outOfFrustumSince = new ConcurrentHashMap<>();
+    // Players waiting in their SpawnQueue for this model, and the ones the queue has let through
+    private final Set<UUID> queuedSpawns = ConcurrentHashMap.newKeySet();
+    private final Queue<UUID> grantedSpawns = new ConcurrentLinkedQueue<>();
     private final int resetTimer = 20 * 60;
     private int counter = ThreadLocalRandom.current().nextInt(20 * 60);
 
@@ -41,18 +67,42 @@ public class SkeletonWatchers implements Listener {
         return !viewers.isEmpty();
     }
 
-    private int watcherUpdateCounter = 0;
-    private static final int UPDATE_INTERVAL = 4;
+    // Full re-evaluation of every nearby player, everything in between only looks at the players that moved
+    private static final int REFRESH_INTERVAL = 20 * 5;
+    private static final double MOVE_THRESHOLD_SQUARED = 4 * 4;
+    private int refreshCounter = ThreadLocalRandom.current().nextInt(REFRESH_INTERVAL);
+    private long lastSnapshotSequence = -1;
+    private double lastUpdateX, lastUpdateY, lastUpdateZ;
+    private World lastUpdateWorld = null;
 
     public void tick() {
-        watcherUpdateCounter++;
-        if (watcherUpdateCounter >= UPDATE_INTERVAL) {
-            updateWatcherList();
-            watcherUpdateCounter = 0;
+        PlayerSpatialIndex.Snapshot snapshot = PlayerSpatialIndex.getSnapshot();
+        if (snapshot.getSequence() != lastSnapshotSequence) {
+            refreshCounter++;
+            // A skipped snapshot means dirty players may have been missed, so fall back to a full update
+            if (snapshot.getSequence() - lastSnapshotSequence != 1 || refreshCounter >= REFRESH_INTERVAL || hasMovedSinceLastUpdate()) {
+                updateWatcherList(snapshot);
+                refreshCounter = 0;
+            } else if (!snapshot.getDirtyPlayers().isEmpty()) {
+                updateDirtyPlayers(snapshot);
+            }
+            lastSnapshotSequence = snapshot.getSequence();
+            if (!outOfFrustumSince.isEmpty()) expireOutOfFrustumViewers(snapshot);
         }
+        if (!grantedSpawns.isEmpty()) spawnGranted(snapshot);
         resync(false);
     }
 
+    private boolean hasMovedSinceLastUpdate() {
+        Location location = skeleton.getCurrentLocation();
+        if (location == null) return false;
+        if (location.getWorld() != lastUpdateWorld) return true;
+        double dx = location.getX() - lastUpdateX;
+        double dy = location.getY() - lastUpdateY;
+        double dz = location.getZ() - lastUpdateZ;
+        return dx * dx + dy * dy + dz * dz > MOVE_THRESHOLD_SQUARED;
+    }
+
     private volatile long lastResyncTime = 0L;
 
     // Clients gets a bit of drift due to some inaccuracies, this resyncs the skeleton
@@ -71,48 +121,144 @@ public class SkeletonWatchers implements Listener {
             lastResyncTime = now;
             counter = 0;
 
-            // do the actual hide/display
-            Set<UUID> tempViewers = Collections.synchronizedSet(new HashSet<>(viewers));
+            // do the actual hide/display, the respawns go through the spawn queue like any other spawn
+            List<UUID> tempViewers = new ArrayList<>(viewers.uuids());
             tempViewers.forEach(viewer -> {
+                ViewerSession session = ViewerRegistry.getSession(viewer);
+                float lodDistance = viewers.getLodDistance(viewer);
                 hideFrom(viewer);
-                Player p = Bukkit.getPlayer(viewer);
-                if (p != null) {
-                    displayTo(p);
+                if (session != null && session.isConnected()) {
+                    spawnFor(session, (double) lodDistance * lodDistance);
                 }
             });
         }
     }
 
     private static final int MIN_VIEW_DISTANCE = 10;
+    private static final float LOD_MIN_STEP = 4;
+    private static final float LOD_STEP_FRACTION = 0.15f;
 
-    private void updateWatcherList() {
-        if (skeleton.getCurrentLocation() == null) return;
+    private void updateWatcherList(PlayerSpatialIndex.Snapshot snapshot) {
+        Location location = skeleton.getCurrentLocation();
+        if (location == null || location.getWorld() == null) return;
+        lastUpdateWorld = location.getWorld();
+        lastUpdateX = location.getX();
+        lastUpdateY = location.getY();
+        lastUpdateZ = location.getZ();
 
         // Clear reused collections instead of creating new ones
         newPlayers.clear();
         toRemove.clear();
 
-        double sightCheckDistanceMin = Math.pow(MIN_VIEW_DISTANCE, 2);
-        double maxViewDistanceSquared = Math.pow(DefaultConfig.maxModelViewDistance, 2);
-
-        for (Player player : skeleton.getCurrentLocation().getWorld().getPlayers()) {
-            double distance = player.getLocation().distanceSquared(skeleton.getCurrentLocation());
-
-            if (distance < sightCheckDistanceMin ||
-                    distance < maxViewDistanceSquared && isModelInSight(player)) {
-                newPlayers.add(player.getUniqueId());
-                if (!viewers.contains(player.getUniqueId())) displayTo(player);
+        snapshot.forEachPlayerNear(location.getWorld(), lastUpdateX, lastUpdateZ, DefaultConfig.maxModelViewDistance + DefaultConfig.viewDistanceHysteresis, player -> {
+            if (canSee(player, lastUpdateX, lastUpdateY, lastUpdateZ)) {
+                newPlayers.add(player.uuid());
+                requestDisplay(player, player.distanceSquared(lastUpdateX, lastUpdateY, lastUpdateZ));
             }
-        }
+        });
 
-        for (UUID viewer : viewers) {
+        for (UUID viewer : viewers.uuids()) {
             if (!newPlayers.contains(viewer)) {
                 toRemove.add(viewer);
             }
         }
 
-        toRemove.forEach(viewers::remove);
         toRemove.forEach(this::hideFrom);
+        for (UUID queued : queuedSpawns) {
+            if (!newPlayers.contains(queued)) cancelDisplay(queued);
+        }
+    }
+
+    private void updateDirtyPlayers(PlayerSpatialIndex.Snapshot snapshot) {
+        Location location = skeleton.getCurrentLocation();
+        if (location == null || location.getWorld() == null) return;
+        double x = location.getX();
+        double y = location.getY();
+        double z = location.getZ();
+        for (UUID uuid : snapshot.getDirtyPlayers()) {
+            PlayerSpatialIndex.PlayerSnapshot player = snapshot.getPlayer(uuid);
+            boolean visible = player != null && player.world() == location.getWorld() && canSee(player, x, y, z);
+            if (visible) {
+                requestDisplay(player, player.distanceSquared(x, y, z));
+            } else {
+                cancelDisplay(uuid);
+                if (viewers.contains(uuid)) hideFrom(uuid);
+            }
+        }
+    }
+
+    /**
+     * Decides whether a player should see the model. Spawning and despawning use different thresholds, so a player
+     * hovering around the view distance or spinning in place doesn't make the model flicker:
+     * a model spawns within the view distance and in front of the player, but an existing viewer only loses it beyond
+     * the view distance plus the hysteresis, or once it has been behind them for a while.
+     */
+    private boolean canSee(PlayerSpatialIndex.PlayerSnapshot player, double x, double y, double z) {
+        double distance = player.distanceSquared(x, y, z);
+        if (distance < MIN_VIEW_DISTANCE * MIN_VIEW_DISTANCE) {
+            outOfFrustumSince.remove(player.uuid());
+            return true;
+        }
+        boolean viewing = viewers.contains(player.uuid());
+        double range = viewing ? DefaultConfig.maxModelViewDistance + DefaultConfig.viewDistanceHysteresis : DefaultConfig.maxModelViewDistance;
+        if (distance >= range * range) return false;
+        if (DefaultConfig.frustumCulling && !isInFrustum(player, Math.sqrt(distance))) {
+            if (!viewing) return false;
+            long now = System.nanoTime();
+            Long since = outOfFrustumSince.putIfAbsent(player.uuid(), now);
+            return since == null || now - since < TimeUnit.SECONDS.toNanos(DefaultConfig.outOfFrustumDespawnSeconds);
+        }
+        outOfFrustumSince.remove(player.uuid());
+        return isModelInSight(player);
+    }
+
+    /**
+     * Cone test against the player's view direction, widened by the margin and by the size of the model,
+     * so models at the edge of the screen or just outside it are already there when the player turns.
+     */
+    private boolean isInFrustum(PlayerSpatialIndex.PlayerSnapshot player, double distance) {
+        Location location = skeleton.getCurrentLocation();
+        double targetX = location.getX();
+        double targetY = location.getY();
+        double targetZ = location.getZ();
+        double radius = 0;
+        OrientedBoundingBox hitbox = skeleton.getModeledEntity() != null ? skeleton.getModeledEntity().getHitboxComponent().getObbHitbox() : null;
+        if (hitbox != null) {
+            Vector3d center = hitbox.getCenter();
+            targetX = center.x;
+            targetY = center.y;
+            targetZ = center.z;
+            radius = hitbox.getHalfExtents().length();
+        }
+        double dx = targetX - player.eyeX();
+        double dy = targetY - player.eyeY();
+        double dz = targetZ - player.eyeZ();
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length <= radius) return true;
+        double yaw = Math.toRadians(player.yaw());
+        double pitch = Math.toRadians(player.pitch());
+        double cosPitch = Math.cos(pitch);
+        double dot = (-Math.sin(yaw) * cosPitch * dx - Math.sin(pitch) * dy + Math.cos(yaw) * cosPitch * dz) / length;
+        double halfAngle = Math.toRadians(DefaultConfig.frustumFov / 2 + DefaultConfig.frustumMargin) + Math.asin(Math.min(1, radius / Math.max(length, distance)));
+        if (halfAngle >= Math.PI) return true;
+        return dot >= Math.cos(halfAngle);
+    }
+
+    // Viewers that stayed behind the player long enough lose the model even if they never moved again
+    private void expireOutOfFrustumViewers(PlayerSpatialIndex.Snapshot snapshot) {
+        long timeout = TimeUnit.SECONDS.toNanos(DefaultConfig.outOfFrustumDespawnSeconds);
+        long now = System.nanoTime();
+        Location location = skeleton.getCurrentLocation();
+        for (Map.Entry<UUID, Long> entry : outOfFrustumSince.entrySet()) {
+            if (now - entry.getValue() < timeout) continue;
+            UUID uuid = entry.getKey();
+            PlayerSpatialIndex.PlayerSnapshot player = snapshot.getPlayer(uuid);
+            if (player == null || location == null || player.world() != location.getWorld()
+                    || !canSee(player, location.getX(), location.getY(), location.getZ())) {
+                outOfFrustumSince.remove(uuid);
+                hideFrom(uuid);
+            }
+        }
     }
 
     /**
@@ -122,7 +268,18 @@ public class SkeletonWatchers implements Listener {
      * @param player the player to check for
      * @return true if any part of the entity is visible
      */
-    private boolean isModelInSight(Player player) {
+    private boolean isModelInSight(PlayerSpatialIndex.PlayerSnapshot player) {
+        Location location = skeleton.getCurrentLocation();
+        long key = VisibilityCache.key(player.uuid(), id, player.eyeX(), player.eyeY(), player.eyeZ(), location.getX(), location.getY(), location.getZ());
+        int cached = VisibilityCache.get(key, location.getWorld(), player.eyeX(), player.eyeZ(), location.getX(), location.getZ());
+        if (cached != -1) return cached == 1;
+        long computedAt = ChunkChangeTracker.now();
+        boolean visible = traceModelInSight(player);
+        VisibilityCache.put(key, visible, computedAt);
+        return visible;
+    }
+
+    private boolean traceModelInSight(PlayerSpatialIndex.PlayerSnapshot player) {
         // Quick sanity checks
         if (skeleton.getModeledEntity() == null) return true;
 
@@ -130,14 +287,24 @@ public class SkeletonWatchers implements Listener {
         OrientedBoundingBox hitbox = skeleton.getModeledEntity().getHitboxComponent().getObbHitbox();
         if (hitbox == null) return true;
 
-        // First try the center point (most efficient check)
         Vector centerPoint = skeleton.getCurrentLocation().toVector();
+        Vector3d[] corners = hitbox.getCorners();
+
+        // Skip the rays entirely if none of the checked points is in a section reachable through open space
+        if (!isSectionReachable(player, centerPoint.getX(), centerPoint.getY(), centerPoint.getZ())
+                && !isSectionReachable(player, corners[0].x, corners[0].y, corners[0].z)
+                && !isSectionReachable(player, corners[4].x, corners[4].y, corners[4].z)
+                && !isSectionReachable(player, corners[2].x, corners[2].y, corners[2].z)
+                && !isSectionReachable(player, corners[6].x, corners[6].y, corners[6].z)) {
+            return false;
+        }
+
+        // First try the center point (most efficient check)
         if (isPointVisible(player, centerPoint)) {
             return true;
         }
 
         // If center isn't visible, check key points of the bounding box
-        Vector3d[] corners = hitbox.getCorners();
 
         // Check every other corner, prioritizing top to bottom
         // OBB corner layout:
@@ -163,88 +330,193 @@ public class SkeletonWatchers implements Listener {
         // No points were visible
     }
 
+    private boolean isSectionReachable(PlayerSpatialIndex.PlayerSnapshot player, double x, double y, double z) {
+        return OcclusionEngine.isSectionReachable(player.world(), player.uuid(), player.eyeX(), player.eyeY(), player.eyeZ(), x, y, z);
+    }
+
     /**
      * Helper method to check if a specific point is visible to the player,
-     * with recursive handling of non-occluding blocks
+     * passing through up to 5 non-occluding blocks
+     */
+    private boolean isPointVisible(PlayerSpatialIndex.PlayerSnapshot player, Vector point) {
+        return OcclusionEngine.isPointVisible(player.world(), player.eyeX(), player.eyeY(), player.eyeZ(), point.getX(), point.getY(), point.getZ());
+    }
+
+    /**
+     * Spawns the model for a player, right away if they are close, otherwise through their {@link SpawnQueue}
      */
-    private boolean isPointVisible(Player player, Vector point) {
-        return isPointVisibleRecursive(player.getEyeLocation(), point, 5); // Max 5 passes through non-occluding blocks
+    private void requestDisplay(PlayerSpatialIndex.PlayerSnapshot player, double distanceSquared) {
+        if (viewers.contains(player.uuid())) {
+            updateLodDistance(player.session(), Math.sqrt(distanceSquared));
+            return;
+        }
+        spawnFor(player.session(), distanceSquared);
     }
 
-    private boolean isPointVisibleRecursive(Location eyeLocation, Vector targetPoint, int remainingPasses) {
-        if (remainingPasses <= 0) {
-            return false; // Prevent infinite recursion
+    private void spawnFor(ViewerSession session, double distanceSquared) {
+        UUID uuid = session.getUUID();
+        if (DefaultConfig.spawnBudgetPerTick <= 0 || distanceSquared < MIN_VIEW_DISTANCE * MIN_VIEW_DISTANCE) {
+            cancelDisplay(uuid);
+            displayTo(session, Math.sqrt(distanceSquared));
+            return;
         }
+        if (queuedSpawns.add(uuid)) SpawnQueue.enqueue(uuid, this, distanceSquared);
+    }
 
-        Vector toPoint = targetPoint.clone().subtract(eyeLocation.toVector());
-        double distance = toPoint.length();
-        toPoint.normalize();
+    private void cancelDisplay(UUID uuid) {
+        if (queuedSpawns.remove(uuid)) SpawnQueue.cancel(uuid, this);
+    }
 
-        var result = eyeLocation.getWorld().rayTraceBlocks(
-                eyeLocation,
-                toPoint,
-                distance,
-                FluidCollisionMode.NEVER,
-                true
-        );
+    // Called by the SpawnQueue on the main thread, the spawn itself happens on the next tick
+    void grantSpawn(UUID uuid) {
+        grantedSpawns.add(uuid);
+    }
 
-        // No block was hit, clear line of sight
-        if (result == null) {
-            return true;
-        }
+    void forgetQueuedSpawn(UUID uuid) {
+        queuedSpawns.remove(uuid);
+    }
 
-        // A block was hit, check if it's occluding or non-occluding
-        if (result.getHitBlock() != null) {
-            if (result.getHitBlock().getType().isOccluding()) {
-                // Occluding block (like stone) blocks vision
-                return false;
-            } else {
-                // Non-occluding block (like glass), continue tracing through it
-                // Create a new starting point past this block
+    /**
+     * Number of bone entities a spawn of this model sends from a distance, used as its cost in the spawn budget.
+     * Bones outside their view distance at that range, such as the impostor up close, aren't sent and cost nothing.
+     */
+    int getSpawnCost(double distanceSquared) {
+        float lodDistance = (float) Math.sqrt(distanceSquared);
+        int cost = 0;
+        for (Bone bone : skeleton.getBones()) {
+            if (bone.isVisibleAt(lodDistance)) cost++;
+        }
+        return Math.max(1, cost);
+    }
 
-                // Get hit position and normalize our direction vector
-                Location hitPos = result.getHitPosition().toLocation(eyeLocation.getWorld());
-                Vector normalizedDirection = toPoint.clone().normalize();
+    private void spawnGranted(PlayerSpatialIndex.Snapshot snapshot) {
+        Location location = skeleton.getCurrentLocation();
+        UUID uuid;
+        while ((uuid = grantedSpawns.poll()) != null) {
+            // Cancelled while waiting for the grant to be picked up
+            if (!queuedSpawns.remove(uuid)) continue;
+            PlayerSpatialIndex.PlayerSnapshot player = snapshot.getPlayer(uuid);
+            if (player == null || location == null || player.world() != location.getWorld()) continue;
+            displayTo(player.session(), Math.sqrt(player.distanceSquared(location.getX(), location.getY(), location.getZ())));
+        }
+    }
 
-                // Use a larger offset to ensure we move past the block
-                // 0.1 blocks (1/10th of a block) should be sufficient
-                Location nextLocation = hitPos.clone().add(
-                        normalizedDirection.clone().multiply(2)
-                );
+    /**
+     * Spawns every bone that is meant to be seen from the given distance, far viewers get the impostor if there is one
+     */
+    private void displayTo(ViewerSession session, double distance) {
+        ServerPlayer serverPlayer = session.getServerPlayer();
+        float lodDistance = (float) distance;
+        if (!viewers.add(serverPlayer, lodDistance)) return;
+        ViewerRegistry.track(session, this);
+        if (!session.canSeeCustomModels() && skeleton.getModeledEntity().getUnderlyingEntity() != null)
+            session.getPlayer().showEntity(MetadataHandler.PLUGIN, skeleton.getModeledEntity().getUnderlyingEntity());
+        List<Packet<? super ClientGamePacketListener>> packets = new ArrayList<>(skeleton.getBones().size() * 2);
+        int spawned = 0;
+        for (Bone bone : skeleton.getBones()) {
+            if (!bone.isVisibleAt(lodDistance)) continue;
+            bone.collectSpawnPackets(session.isBedrock(), packets);
+            spawned++;
+        }
+        InteractionHitbox interactionHitbox = skeleton.getInteractionHitbox();
+        if (interactionHitbox != null && session.canSeeCustomModels()) {
+            interactionHitbox.collectSpawnPackets(packets);
+            spawned++;
+        }
+        session.recordSpawn(spawned, sendBundled(serverPlayer, packets));
+        if (skeleton.getModeledEntity() instanceof PropEntity propEntity)
+            propEntity.showFakePropBlocksToPlayer(session.getPlayer());
+    }
 
-                // Continue the ray trace
-                return isPointVisibleRecursive(nextLocation, targetPoint, remainingPasses - 1);
+    /**
+     * Spawns or despawns the bones that crossed their view distance since the viewer's level of detail distance last
+     * changed. The distance only moves in steps, so bones don't flicker when a viewer walks back and forth.
+     */
+    private void updateLodDistance(ViewerSession session, double distance) {
+        float current = viewers.getLodDistance(session.getUUID());
+        if (current < 0 || Math.abs(distance - current) <= Math.max(LOD_MIN_STEP, current * LOD_STEP_FRACTION)) return;
+        float next = (float) distance;
+        viewers.setLodDistance(session.getUUID(), next);
+        List<Packet<? super ClientGamePacketListener>> spawnPackets = new ArrayList<>();
+        IntList removedIds = new IntArrayList();
+        int spawned = 0;
+        for (Bone bone : skeleton.getBones()) {
+            boolean wasVisible = bone.isVisibleAt(current);
+            boolean isVisible = bone.isVisibleAt(next);
+            if (isVisible && !wasVisible) {
+                bone.collectSpawnPackets(session.isBedrock(), spawnPackets);
+                spawned++;
+            } else if (wasVisible && !isVisible) {
+                bone.collectEntityIds(removedIds);
             }
         }
-
-        // Something else was hit (should rarely happen)
-        return false;
+        if (!session.isConnected()) return;
+        if (!removedIds.isEmpty()) {
+            session.getServerPlayer().connection.send(new ClientboundRemoveEntitiesPacket(removedIds));
+            session.recordRemove(removedIds.size());
+        }
+        if (spawned > 0) session.recordSpawn(spawned, sendBundled(session.getServerPlayer(), spawnPackets));
     }
 
-    private void displayTo(Player player) {
-        boolean isBedrock = BedrockChecker.isBedrock(player);
-        if (isBedrock && !DefaultConfig.sendCustomModelsToBedrockClients && skeleton.getModeledEntity().getUnderlyingEntity() != null)
-            player.showEntity(MetadataHandler.PLUGIN, skeleton.getModeledEntity().getUnderlyingEntity());
-        viewers.add(player.getUniqueId());
-        skeleton.getBones().forEach(bone -> bone.displayTo(player));
+    private void hideFrom(UUID uuid) {
+        outOfFrustumSince.remove(uuid);
+        ServerPlayer serverPlayer = viewers.remove(uuid);
+        if (serverPlayer == null) return;
+        ViewerSession session = ViewerRegistry.getSession(uuid);
+        // No session means the player quit, which already dropped them from every skeleton
+        if (session == null) return;
+        session.removeVisibleSkeleton(this);
+        if (!session.isConnected()) return;
+        if (!session.canSeeCustomModels() && skeleton.getModeledEntity().getUnderlyingEntity() != null)
+            session.getPlayer().hideEntity(MetadataHandler.PLUGIN, skeleton.getModeledEntity().getUnderlyingEntity());
+        IntList entityIds = skeleton.getBoneEntityIds();
+        serverPlayer.connection.send(new ClientboundRemoveEntitiesPacket(entityIds));
+        session.recordRemove(entityIds.size());
         if (skeleton.getModeledEntity() instanceof PropEntity propEntity)
-            propEntity.showFakePropBlocksToPlayer(player);
+            propEntity.showRealBlocksToPlayer(session.getPlayer());
     }
 
-    private void hideFrom(UUID uuid) {
-        boolean isBedrock = BedrockChecker.isBedrock(Bukkit.getPlayer(uuid));
-        Player player = Bukkit.getPlayer(uuid);
-        if (player == null || !player.isValid()) return;
-        if (isBedrock && !DefaultConfig.sendCustomModelsToBedrockClients && skeleton.getModeledEntity().getUnderlyingEntity() != null)
-            player.hideEntity(MetadataHandler.PLUGIN, skeleton.getModeledEntity().getUnderlyingEntity());
+    // The client refuses bundles above this size, very large models are split into several bundles
+    private static int sendBundled(ServerPlayer serverPlayer, List<Packet<? super ClientGamePacketListener>> packets) {
+        if (packets.isEmpty()) return 0;
+        if (packets.size() <= BundlerInfo.BUNDLE_SIZE_LIMIT) {
+            serverPlayer.connection.send(new ClientboundBundlePacket(packets));
+            return 1;
+        }
+        int bundles = 0;
+        for (int i = 0; i < packets.size(); i += BundlerInfo.BUNDLE_SIZE_LIMIT) {
+            int end = Math.min(i + BundlerInfo.BUNDLE_SIZE_LIMIT, packets.size());
+            serverPlayer.connection.send(new ClientboundBundlePacket(new ArrayList<>(packets.subList(i, end))));
+            bundles++;
+        }
+        return bundles;
+    }
+
+    /**
+     * Drops a viewer without sending any packets, for when the client already discarded the entities.
+     */
+    void forgetViewer(UUID uuid) {
         viewers.remove(uuid);
-        skeleton.getBones().forEach(bone -> bone.hideFrom(uuid));
-        if (skeleton.getModeledEntity() instanceof PropEntity propEntity)
-            propEntity.showRealBlocksToPlayer(player);
+        outOfFrustumSince.remove(uuid);
+    }
+
+    /**
+     * Drops every viewer from the reverse index, the skeleton is responsible for despawning the bones client-side.
+     */
+    public void remove() {
+        for (UUID viewer : viewers.uuids()) {
+            ViewerRegistry.untrack(viewer, this);
+        }
+        viewers.clear();
+        outOfFrustumSince.clear();
+        for (UUID queued : queuedSpawns) {
+            cancelDisplay(queued);
+        }
+        grantedSpawns.clear();
     }
 
     public void sendPackets(Bone bone) {
         if (viewers.isEmpty()) return;
         bone.sendUpdatePacket();
     }
-}
\ No newline at end of file
+}
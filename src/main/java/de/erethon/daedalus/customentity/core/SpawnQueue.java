@@ -0,0 +1,142 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.MetadataHandler;
+import de.erethon.daedalus.config.DefaultConfig;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Spreads model spawns for a player over several ticks.
+ * Joining or teleporting into a busy area would otherwise spawn every visible model in the same tick, which sends
+ * the add and metadata packets of every bone at once and freezes the client. Pending spawns are kept per player,
+ * nearest first, and each tick grants spawns until the player's bone entity budget is used up.
+ * The granted skeletons do the actual spawning on their next tick. Despawns are never queued.
+ */
+public class SpawnQueue {
+
+    private static final Map<UUID, PlayerQueue> queues = new ConcurrentHashMap<>();
+    private static BukkitTask drainTask = null;
+
+    private SpawnQueue() {
+    }
+
+    public static void start() {
+        drainTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }.runTaskTimer(MetadataHandler.PLUGIN, 1, 1);
+    }
+
+    public static void shutdown() {
+        if (drainTask != null) drainTask.cancel();
+        drainTask = null;
+        queues.clear();
+    }
+
+    /**
+     * Queues a skeleton to be spawned for a player, does nothing if it is already queued
+     */
+    static void enqueue(UUID player, SkeletonWatchers skeletonWatchers, double distanceSquared) {
+        queues.compute(player, (uuid, queue) -> {
+            if (queue == null) queue = new PlayerQueue(uuid);
+            queue.add(skeletonWatchers, distanceSquared);
+            return queue;
+        });
+    }
+
+    static void cancel(UUID player, SkeletonWatchers skeletonWatchers) {
+        PlayerQueue queue = queues.get(player);
+        if (queue != null) queue.cancel(skeletonWatchers);
+    }
+
+    /**
+     * Drops every pending spawn of a player, used when quitting or changing worlds
+     */
+    public static void forgetPlayer(UUID player) {
+        PlayerQueue queue = queues.remove(player);
+        if (queue == null) return;
+        for (SkeletonWatchers skeletonWatchers : queue.clear()) {
+            skeletonWatchers.forgetQueuedSpawn(player);
+        }
+    }
+
+    public static int getPendingSpawns(UUID player) {
+        PlayerQueue queue = queues.get(player);
+        return queue == null ? 0 : queue.size();
+    }
+
+    private static void drain() {
+        for (PlayerQueue queue : queues.values()) {
+            queue.grant(DefaultConfig.spawnBudgetPerTick);
+            queues.computeIfPresent(queue.player, (uuid, current) -> current.size() == 0 ? null : current);
+        }
+    }
+
+    private static final class Entry {
+        private final SkeletonWatchers skeletonWatchers;
+        private final double distanceSquared;
+        private boolean cancelled = false;
+
+        private Entry(SkeletonWatchers skeletonWatchers, double distanceSquared) {
+            this.skeletonWatchers = skeletonWatchers;
+            this.distanceSquared = distanceSquared;
+        }
+    }
+
+    private static final class PlayerQueue {
+        private final UUID player;
+        private final PriorityQueue<Entry> entries = new PriorityQueue<>((a, b) -> Double.compare(a.distanceSquared, b.distanceSquared));
+        // Lets cancelled entries be skipped without searching the heap
+        private final Map<SkeletonWatchers, Entry> pending = new HashMap<>();
+
+        private PlayerQueue(UUID player) {
+            this.player = player;
+        }
+
+        private synchronized void add(SkeletonWatchers skeletonWatchers, double distanceSquared) {
+            if (pending.containsKey(skeletonWatchers)) return;
+            Entry entry = new Entry(skeletonWatchers, distanceSquared);
+            pending.put(skeletonWatchers, entry);
+            entries.add(entry);
+        }
+
+        private synchronized void cancel(SkeletonWatchers skeletonWatchers) {
+            Entry entry = pending.remove(skeletonWatchers);
+            if (entry != null) entry.cancelled = true;
+        }
+
+        private synchronized int size() {
+            return pending.size();
+        }
+
+        private synchronized List<SkeletonWatchers> clear() {
+            List<SkeletonWatchers> skeletons = new ArrayList<>(pending.keySet());
+            pending.clear();
+            entries.clear();
+            return skeletons;
+        }
+
+        // At least one spawn is granted per tick, so a model with more bones than the budget still gets spawned
+        private synchronized void grant(int budget) {
+            boolean granted = false;
+            while (!entries.isEmpty() && (budget > 0 || !granted)) {
+                Entry entry = entries.poll();
+                if (entry.cancelled) continue;
+                pending.remove(entry.skeletonWatchers);
+                entry.skeletonWatchers.grantSpawn(player);
+                budget -= entry.skeletonWatchers.getSpawnCost(entry.distanceSquared);
+                granted = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package de.erethon.daedalus.customentity.core;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link ViewerSession} for every connected player, which also works as the reverse index from players to
+ * the skeletons they can currently see. This lets quitting or changing worlds clean up only the models the player
+ * actually had spawned instead of scanning every loaded model.
+ */
+public class ViewerRegistry implements Listener {
+
+    private static final ConcurrentHashMap<UUID, ViewerSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the session of a player, creating it if they joined before the plugin was enabled.
+     * Only call this from the main thread, the worker threads get sessions from the {@link PlayerSpatialIndex}.
+     */
+    public static ViewerSession getSession(Player player) {
+        return sessions.computeIfAbsent(player.getUniqueId(), k -> new ViewerSession(player));
+    }
+
+    /**
+     * @return the session, or null if the player is not connected
+     */
+    public static ViewerSession getSession(UUID player) {
+        return sessions.get(player);
+    }
+
+    static void track(ViewerSession session, SkeletonWatchers skeletonWatchers) {
+        session.addVisibleSkeleton(skeletonWatchers);
+    }
+
+    static void untrack(UUID player, SkeletonWatchers skeletonWatchers) {
+        ViewerSession session = sessions.get(player);
+        if (session != null) session.removeVisibleSkeleton(skeletonWatchers);
+    }
+
+    /**
+     * Gets the skeletons currently spawned for a player
+     *
+     * @param player UUID of the player
+     * @return Live, read-only view of the visible skeletons
+     */
+    public static Set<SkeletonWatchers> getVisibleSkeletons(UUID player) {
+        ViewerSession session = sessions.get(player);
+        if (session == null) return Collections.emptySet();
+        return session.getVisibleSkeletons();
+    }
+
+    /**
+     * Drops a player from every skeleton they can see without sending any packets.
+     * Used when the client has already discarded its entities, such as when quitting or changing worlds.
+     */
+    public static void forgetPlayer(UUID player) {
+        SpawnQueue.forgetPlayer(player);
+        ViewerSession session = sessions.get(player);
+        if (session == null) return;
+        for (SkeletonWatchers skeletonWatchers : session.clearVisibleSkeletons()) {
+            skeletonWatchers.forgetViewer(player);
+        }
+    }
+
+    public static void shutdown() {
+        sessions.clear();
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        getSession(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        forgetPlayer(event.getPlayer().getUniqueId());
+        sessions.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        forgetPlayer(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,112 @@
+package de.erethon.daedalus.customentity.core;
+
+import de.erethon.daedalus.config.DefaultConfig;
+import de.erethon.daedalus.thirdparty.BedrockChecker;
+import net.minecraft.server.level.ServerPlayer;
+import org.bukkit.craftbukkit.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Everything the model code needs to know about a connected player, resolved once when they join.
+ * Spawning and despawning take the session by reference instead of looking up the player, their handle and
+ * their client type again for every skeleton. Sessions are created and torn down by the {@link ViewerRegistry}.
+ */
+public class ViewerSession {
+
+    private final UUID uuid;
+    private final Player player;
+    // CraftBukkit keeps the same handle across respawns, so this stays valid for the whole connection
+    private final ServerPlayer serverPlayer;
+    private final boolean bedrock;
+    private final boolean customModels;
+    private final Set<SkeletonWatchers> visibleSkeletons = ConcurrentHashMap.newKeySet();
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong entitiesSpawned = new AtomicLong();
+    private final AtomicLong entitiesRemoved = new AtomicLong();
+
+    ViewerSession(Player player) {
+        this.uuid = player.getUniqueId();
+        this.player = player;
+        this.serverPlayer = ((CraftPlayer) player).getHandle();
+        this.bedrock = BedrockChecker.isBedrock(player);
+        this.customModels = !bedrock || DefaultConfig.sendCustomModelsToBedrockClients;
+    }
+
+    public UUID getUUID() {
+        return uuid;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public ServerPlayer getServerPlayer() {
+        return serverPlayer;
+    }
+
+    public boolean isBedrock() {
+        return bedrock;
+    }
+
+    /**
+     * Whether the client gets the custom bone models, otherwise it is shown the underlying entity instead
+     */
+    public boolean canSeeCustomModels() {
+        return customModels;
+    }
+
+    public boolean isConnected() {
+        return !serverPlayer.hasDisconnected();
+    }
+
+    /**
+     * Gets the skeletons currently spawned for this player
+     *
+     * @return Live, read-only view of the visible skeletons
+     */
+    public Set<SkeletonWatchers> getVisibleSkeletons() {
+        return Collections.unmodifiableSet(visibleSkeletons);
+    }
+
+    void addVisibleSkeleton(SkeletonWatchers skeletonWatchers) {
+        visibleSkeletons.add(skeletonWatchers);
+    }
+
+    void removeVisibleSkeleton(SkeletonWatchers skeletonWatchers) {
+        visibleSkeletons.remove(skeletonWatchers);
+    }
+
+    Set<SkeletonWatchers> clearVisibleSkeletons() {
+        Set<SkeletonWatchers> skeletons = Set.copyOf(visibleSkeletons);
+        visibleSkeletons.removeAll(skeletons);
+        return skeletons;
+    }
+
+    void recordSpawn(int entities, int packets) {
+        entitiesSpawned.addAndGet(entities);
+        packetsSent.addAndGet(packets);
+    }
+
+    void recordRemove(int entities) {
+        entitiesRemoved.addAndGet(entities);
+        packetsSent.incrementAndGet();
+    }
+
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    public long getEntitiesSpawned() {
+        return entitiesSpawned.get();
+    }
+
+    public long getEntitiesRemoved() {
+        return entitiesRemoved.get();
+    }
+}
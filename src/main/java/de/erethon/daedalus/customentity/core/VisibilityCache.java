@@ -0,0 +1,83 @@
+package de.erethon.daedalus.customentity.core;
+
+import org.bukkit.World;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches line of sight results between players and skeletons.
+ * Entries are keyed on the player, the skeleton and the quantized eye and model positions, so moving less than
+ * half a block keeps hitting the cache. The table is direct-mapped with a fixed size, a new entry simply replaces
+ * whatever was in its slot, which keeps memory bounded regardless of how many players and models exist.
+ */
+public class VisibilityCache {
+
+    private static final int TABLE_SIZE = 1 << 16;
+    private static final long TTL = TimeUnit.SECONDS.toNanos(2);
+    // The model's hitbox sticks out from its location, changes within this margin of the ray still count
+    private static final double CHUNK_MARGIN = 4;
+    private static final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(TABLE_SIZE);
+
+    private record Entry(long key, boolean visible, long createdAt) {
+    }
+
+    private VisibilityCache() {
+    }
+
+    public static long key(UUID player, int skeletonId, double eyeX, double eyeY, double eyeZ, double modelX, double modelY, double modelZ) {
+        long hash = player.getMostSignificantBits() * 31 + player.getLeastSignificantBits();
+        hash = mix(hash, skeletonId);
+        hash = mix(hash, quantize(eyeX));
+        hash = mix(hash, quantize(eyeY));
+        hash = mix(hash, quantize(eyeZ));
+        hash = mix(hash, quantize(modelX));
+        hash = mix(hash, quantize(modelY));
+        hash = mix(hash, quantize(modelZ));
+        return hash;
+    }
+
+    /**
+     * Gets a cached result if it is still fresh and no block changed around the ray since it was computed
+     *
+     * @return 1 if visible, 0 if not visible, -1 if there is no usable entry
+     */
+    public static int get(long key, World world, double eyeX, double eyeZ, double modelX, double modelZ) {
+        Entry entry = entries.get(slot(key));
+        if (entry == null || entry.key != key) return -1;
+        if (ChunkChangeTracker.now() - entry.createdAt > TTL) return -1;
+        if (ChunkChangeTracker.hasChanged(world,
+                Math.min(eyeX, modelX) - CHUNK_MARGIN, Math.min(eyeZ, modelZ) - CHUNK_MARGIN,
+                Math.max(eyeX, modelX) + CHUNK_MARGIN, Math.max(eyeZ, modelZ) + CHUNK_MARGIN,
+                entry.createdAt)) return -1;
+        return entry.visible ? 1 : 0;
+    }
+
+    /**
+     * Stores a result, the timestamp from {@link ChunkChangeTracker#now()} must be taken before the ray trace so
+     * concurrent block changes invalidate it
+     */
+    public static void put(long key, boolean visible, long computedAt) {
+        entries.set(slot(key), new Entry(key, visible, computedAt));
+    }
+
+    public static void shutdown() {
+        for (int i = 0; i < TABLE_SIZE; i++) entries.set(i, null);
+    }
+
+    private static int slot(long key) {
+        return (int) (key ^ (key >>> 32)) & (TABLE_SIZE - 1);
+    }
+
+    // Half block resolution
+    private static long quantize(double coordinate) {
+        return (long) Math.floor(coordinate * 2);
+    }
+
+    private static long mix(long hash, long value) {
+        hash ^= value + 0x9E3779B97F4A7C15L + (hash << 6) + (hash >>> 2);
+        hash *= 0xBF58476D1CE4E5B9L;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -1,11 +1,15 @@
 package de.erethon.daedalus.customentity.core.components;
 
+import de.erethon.daedalus.animation.AnimationLayer;
 import de.erethon.daedalus.animation.AnimationManager;
 import de.erethon.daedalus.customentity.ModeledEntity;
 import de.erethon.daedalus.dataconverter.FileModelConverter;
 import de.erethon.daedalus.utils.MathToolkit;
 import de.erethon.bedrock.chat.MessageUtil;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
+
 /**
  * The AnimationComponent class provides functionalities to manage and animate
  * a ModeledEntity instance. It enables playing, stopping, and blending animations
@@ -44,6 +48,31 @@ public class AnimationComponent {
         return animationManager.play(animationName, blendAnimation, loop);
     }
 
+    /**
+     * Plays an animation on a named layer over the current animation, see {@link AnimationManager#playLayer}
+     *
+     * @return Whether the layer successfully started playing.
+     */
+    public boolean playAnimationLayer(String layerName, String animationName, AnimationLayer.Mode mode, float weight, boolean loop,
+                                      int fadeInTicks, int fadeOutTicks, @Nullable Collection<String> maskBones) {
+        if (animationManager == null) return false;
+        return animationManager.playLayer(layerName, animationName, mode, weight, loop, fadeInTicks, fadeOutTicks, maskBones);
+    }
+
+    /**
+     * Fades out the animation layer with the specified name
+     */
+    public void stopAnimationLayer(String layerName) {
+        if (animationManager != null) animationManager.stopLayer(layerName);
+    }
+
+    /**
+     * Sets how strongly the animation layer with the specified name is blended, from 0 to 1
+     */
+    public void setAnimationLayerWeight(String layerName, float weight) {
+        if (animationManager != null) animationManager.setLayerWeight(layerName, weight);
+    }
+
     /**
      * Checks if the animation with the specified name exists for the current animation manager.
      *
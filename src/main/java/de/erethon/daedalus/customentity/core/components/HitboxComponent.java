@@ -1,15 +1,18 @@
 package de.erethon.daedalus.customentity.core.components;
 
+import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.customentity.ModeledEntity;
+import de.erethon.daedalus.customentity.core.BoneHitboxTree;
+import de.erethon.daedalus.customentity.core.HitboxGrid;
+import de.erethon.daedalus.customentity.core.InteractionHitbox;
 import de.erethon.daedalus.customentity.core.OrientedBoundingBox;
-import org.bukkit.entity.Player;
-
-import java.util.List;
-import java.util.stream.Collectors;
+import org.bukkit.Location;
 
 public class HitboxComponent {
     private final ModeledEntity modeledEntity;
     private OrientedBoundingBox obbHitbox = null;
+    // Built once with the skeleton, before the entity is ticked or hit tested from any other thread
+    private volatile BoneHitboxTree boneHitboxes = null;
 
     public HitboxComponent(ModeledEntity modeledEntity) {
         this.modeledEntity = modeledEntity;
@@ -35,40 +38,70 @@ public class HitboxComponent {
         } else return obbHitbox;
     }
 
-    public void tick(int tickCounter) {
-        if (modeledEntity.getSkeletonBlueprint().getHitbox() == null) return;
-        getObbHitbox().update(modeledEntity.getLocation());
-        if (modeledEntity.getInteractionComponent().getHitboxContactCallback() == null) return;
-        if (tickCounter % 2 == 0) {
-            checkPlayerCollisions();
-        }
+    /**
+     * Builds the per-bone hitboxes from the bones of the skeleton, if they are enabled in the config
+     */
+    public void buildBoneHitboxes() {
+        if (!DefaultConfig.boneHitboxes || modeledEntity.getSkeleton().getRootBone() == null) return;
+        BoneHitboxTree tree = new BoneHitboxTree(modeledEntity.getSkeleton().getRootBone());
+        if (!tree.isEmpty()) boneHitboxes = tree;
     }
 
     /**
-     * Checks for collisions with nearby players and fires appropriate events
+     * Gets the per-bone hitboxes, null unless they are enabled in the config and the model has bones with cubes
      */
-    public void checkPlayerCollisions() {
-        if (modeledEntity.getHitboxComponent().getObbHitbox() == null) return;
+    public BoneHitboxTree getBoneHitboxes() {
+        return boneHitboxes;
+    }
 
-        // Check for nearby players (within 10 blocks)
-        List<Player> nearbyPlayers = modeledEntity.getWorld().getPlayers().stream()
-                .filter(player -> player.getLocation().distanceSquared(modeledEntity.getLocation()) < Math.pow(10, 2))
-                .collect(Collectors.toList());
+    /**
+     * Distance along a ray at which it hits the model, tested against the bone hitboxes if the model has them
+     *
+     * @return the distance, or -1 if the ray misses
+     */
+    public double rayIntersection(Location eyeLocation, double maxDistance) {
+        BoneHitboxTree tree = getBoneHitboxes();
+        if (tree == null) return getObbHitbox().rayIntersection(eyeLocation, maxDistance);
+        BoneHitboxTree.Hit hit = tree.rayIntersection(eyeLocation, maxDistance);
+        return hit == null ? -1 : hit.distance();
+    }
 
-        // For each nearby player, check collision
-        for (Player player : nearbyPlayers) {
-            if (isPlayerColliding(player)) {
-                // Fire the appropriate hitbox contact event
-                modeledEntity.getInteractionComponent().callHitboxContactEvent(player);
-            }
-        }
+    /**
+     * Same as {@link #rayIntersection(Location, double)} for a normalized direction given as primitives
+     */
+    public double rayIntersection(double originX, double originY, double originZ,
+                                  double directionX, double directionY, double directionZ, double maxDistance) {
+        BoneHitboxTree tree = getBoneHitboxes();
+        if (tree == null)
+            return getObbHitbox().rayIntersection(originX, originY, originZ, directionX, directionY, directionZ, maxDistance);
+        BoneHitboxTree.Hit hit = tree.segmentIntersection(originX, originY, originZ,
+                originX + directionX * maxDistance, originY + directionY * maxDistance, originZ + directionZ * maxDistance);
+        return hit == null ? -1 : hit.distance() * maxDistance;
     }
 
     /**
-     * Checks if a player is colliding with this entity's OBB hitbox
+     * Fraction of a segment at which it enters the model, tested against the bone hitboxes if the model has them
+     *
+     * @return the fraction, or -1 if the segment misses
      */
-    protected boolean isPlayerColliding(Player player) {
-        return getObbHitbox().isAABBCollidingWithOBB(player.getBoundingBox(), getObbHitbox());
+    public double segmentIntersection(double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        BoneHitboxTree tree = getBoneHitboxes();
+        if (tree == null) return getObbHitbox().segmentIntersection(fromX, fromY, fromZ, toX, toY, toZ);
+        BoneHitboxTree.Hit hit = tree.segmentIntersection(fromX, fromY, fromZ, toX, toY, toZ);
+        return hit == null ? -1 : hit.distance();
+    }
+
+    public void tick(int tickCounter) {
+        OrientedBoundingBox obb = getObbHitbox().update(modeledEntity.getLocation());
+        BoneHitboxTree tree = getBoneHitboxes();
+        if (tree != null) {
+            tree.refit(modeledEntity.getSkeleton().getCurrentLocation());
+            HitboxGrid.update(modeledEntity, tree.getMinX(), tree.getMinZ(), tree.getMaxX(), tree.getMaxZ());
+        } else {
+            HitboxGrid.update(modeledEntity, obb);
+        }
+        InteractionHitbox interactionHitbox = modeledEntity.getSkeleton().getInteractionHitbox();
+        if (interactionHitbox != null) interactionHitbox.update(obb);
     }
 
     public void setCustomHitboxOnUnderlyingEntity() {
@@ -40,7 +40,7 @@ public class InteractionComponent {
      * Triggers the appropriate hitbox contact event based on entity type
      * This method should be overridden by subclasses to fire their specific event types
      */
-    protected void callHitboxContactEvent(Player player) {
+    public void callHitboxContactEvent(Player player) {
         ModeledEntityHitboxContactEvent event = new ModeledEntityHitboxContactEvent(player, modeledEntity);
         Bukkit.getPluginManager().callEvent(event);
     }
@@ -0,0 +1,175 @@
+package de.erethon.daedalus.customentity.core.occlusion;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+
+/**
+ * Packed block opacity of one chunk, built off-thread from a {@link ChunkSnapshot}.
+ * Every section stores two 4096 bit sets: blocks that fully block sight, and solid blocks that can be seen through,
+ * such as glass or leaves. Sections without any such block are left null. Instances never change once built.
+ * For the section visibility graph, every section also stores which of its faces are connected through
+ * non-occluding blocks, as 15 bits, one per pair of faces.
+ */
+final class ChunkOcclusionData {
+
+    static final byte AIR = 0;
+    static final byte OCCLUDING = 1;
+    static final byte SEE_THROUGH = 2;
+
+    // Faces of a section, opposite faces are next to each other so the opposite is face ^ 1
+    static final int DOWN = 0;
+    static final int UP = 1;
+    static final int NORTH = 2;
+    static final int SOUTH = 3;
+    static final int WEST = 4;
+    static final int EAST = 5;
+    static final short ALL_CONNECTED = 0x7FFF;
+
+    private static final byte[] MATERIAL_OPACITY = createMaterialOpacity();
+    private static final int[][] FACE_PAIR_BITS = createFacePairBits();
+
+    private final int minSection;
+    private final long[][] occluding;
+    private final long[][] seeThrough;
+    private final short[] faceConnections;
+
+    private ChunkOcclusionData(int minSection, long[][] occluding, long[][] seeThrough, short[] faceConnections) {
+        this.minSection = minSection;
+        this.occluding = occluding;
+        this.seeThrough = seeThrough;
+        this.faceConnections = faceConnections;
+    }
+
+    static ChunkOcclusionData build(ChunkSnapshot snapshot, int minHeight, int maxHeight) {
+        int minSection = minHeight >> 4;
+        int sectionCount = ((maxHeight - 1) >> 4) - minSection + 1;
+        long[][] occluding = new long[sectionCount][];
+        long[][] seeThrough = new long[sectionCount][];
+        short[] faceConnections = new short[sectionCount];
+        for (int section = 0; section < sectionCount; section++) {
+            faceConnections[section] = ALL_CONNECTED;
+            if (snapshot.isSectionEmpty(section)) continue;
+            long[] occludingBits = new long[64];
+            long[] seeThroughBits = new long[64];
+            boolean anyOccluding = false;
+            boolean anySeeThrough = false;
+            int baseY = (section + minSection) << 4;
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        byte opacity = MATERIAL_OPACITY[snapshot.getBlockType(x, baseY + y, z).ordinal()];
+                        if (opacity == AIR) continue;
+                        int index = (y << 8) | (z << 4) | x;
+                        if (opacity == OCCLUDING) {
+                            occludingBits[index >>> 6] |= 1L << index;
+                            anyOccluding = true;
+                        } else {
+                            seeThroughBits[index >>> 6] |= 1L << index;
+                            anySeeThrough = true;
+                        }
+                    }
+                }
+            }
+            if (anyOccluding) {
+                occluding[section] = occludingBits;
+                faceConnections[section] = computeFaceConnections(occludingBits);
+            }
+            if (anySeeThrough) seeThrough[section] = seeThroughBits;
+        }
+        return new ChunkOcclusionData(minSection, occluding, seeThrough, faceConnections);
+    }
+
+    // Flood fills every open region of the section and connects all the faces each region touches
+    private static short computeFaceConnections(long[] occludingBits) {
+        long[] visited = occludingBits.clone();
+        int[] queue = new int[4096];
+        short connections = 0;
+        for (int start = 0; start < 4096; start++) {
+            if ((visited[start >>> 6] & (1L << start)) != 0) continue;
+            visited[start >>> 6] |= 1L << start;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            int faces = 0;
+            while (head < tail) {
+                int index = queue[head++];
+                int x = index & 15;
+                int z = (index >> 4) & 15;
+                int y = index >> 8;
+                if (x == 0) faces |= 1 << WEST; else tail = enqueue(visited, queue, tail, index - 1);
+                if (x == 15) faces |= 1 << EAST; else tail = enqueue(visited, queue, tail, index + 1);
+                if (z == 0) faces |= 1 << NORTH; else tail = enqueue(visited, queue, tail, index - 16);
+                if (z == 15) faces |= 1 << SOUTH; else tail = enqueue(visited, queue, tail, index + 16);
+                if (y == 0) faces |= 1 << DOWN; else tail = enqueue(visited, queue, tail, index - 256);
+                if (y == 15) faces |= 1 << UP; else tail = enqueue(visited, queue, tail, index + 256);
+            }
+            for (int a = 0; a < 6; a++) {
+                if ((faces & (1 << a)) == 0) continue;
+                for (int b = a + 1; b < 6; b++) {
+                    if ((faces & (1 << b)) != 0) connections |= (short) (1 << FACE_PAIR_BITS[a][b]);
+                }
+            }
+            if (connections == ALL_CONNECTED) break;
+        }
+        return connections;
+    }
+
+    private static int enqueue(long[] visited, int[] queue, int tail, int index) {
+        if ((visited[index >>> 6] & (1L << index)) != 0) return tail;
+        visited[index >>> 6] |= 1L << index;
+        queue[tail] = index;
+        return tail + 1;
+    }
+
+    /**
+     * Checks whether sight can pass through a section, entering through one face and leaving through another
+     *
+     * @param sectionY Section y in world coordinates, blockY >> 4
+     */
+    boolean isConnected(int sectionY, int fromFace, int toFace) {
+        int section = sectionY - minSection;
+        if (section < 0 || section >= faceConnections.length || fromFace == toFace) return true;
+        return (faceConnections[section] & (1 << FACE_PAIR_BITS[fromFace][toFace])) != 0;
+    }
+
+    /**
+     * @param x Block x within the chunk
+     * @param y World y
+     * @param z Block z within the chunk
+     */
+    byte getOpacity(int x, int y, int z) {
+        int section = (y >> 4) - minSection;
+        if (section < 0 || section >= occluding.length) return AIR;
+        int index = ((y & 15) << 8) | (z << 4) | x;
+        long[] occludingBits = occluding[section];
+        if (occludingBits != null && (occludingBits[index >>> 6] & (1L << index)) != 0) return OCCLUDING;
+        long[] seeThroughBits = seeThrough[section];
+        if (seeThroughBits != null && (seeThroughBits[index >>> 6] & (1L << index)) != 0) return SEE_THROUGH;
+        return AIR;
+    }
+
+    private static int[][] createFacePairBits() {
+        int[][] bits = new int[6][6];
+        int bit = 0;
+        for (int a = 0; a < 6; a++) {
+            for (int b = a + 1; b < 6; b++) {
+                bits[a][b] = bit;
+                bits[b][a] = bit;
+                bit++;
+            }
+        }
+        return bits;
+    }
+
+    // Mirrors what the old ray traces did: occluding blocks stop sight, other solid blocks were traced through
+    private static byte[] createMaterialOpacity() {
+        Material[] materials = Material.values();
+        byte[] opacity = new byte[materials.length];
+        for (Material material : materials) {
+            if (material.isLegacy() || !material.isBlock()) continue;
+            if (material.isOccluding()) opacity[material.ordinal()] = OCCLUDING;
+            else if (material.isSolid()) opacity[material.ordinal()] = SEE_THROUGH;
+        }
+        return opacity;
+    }
+}
@@ -0,0 +1,264 @@
+package de.erethon.daedalus.customentity.core.occlusion;
+
+import de.erethon.bedrock.chat.MessageUtil;
+import de.erethon.daedalus.MetadataHandler;
+import de.erethon.daedalus.customentity.core.ChunkChangeTracker;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Line of sight checks over cached chunk opacity data, safe to run from the worker threads.
+ * Chunks are snapshotted on the main thread when a ray first needs them or when blocks in them change, and the
+ * opacity bit sets are built on a separate thread. Rays walk the voxels with a DDA in a single pass, counting the
+ * see-through blocks on the way instead of re-tracing after each one. Chunks that aren't cached yet count as clear.
+ * Before any ray is cast, {@link SectionVisibilityGraph} rules out models in sections that can't be reached from the
+ * player's section through open space at all.
+ */
+public class OcclusionEngine {
+
+    // Same limit as the old recursive ray traces had
+    private static final int MAX_SEE_THROUGH_BLOCKS = 5;
+    private static final int MAX_SNAPSHOTS_PER_TICK = 16;
+
+    private static final Map<UUID, WorldData> worlds = new ConcurrentHashMap<>();
+    private static ExecutorService buildExecutor = null;
+    private static BukkitTask snapshotTask = null;
+
+    private OcclusionEngine() {
+    }
+
+    public static void start() {
+        buildExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Daedalus-Occlusion"));
+        snapshotTask = new BukkitRunnable() {
+            @Override
+            public void run() {
+                takeSnapshots();
+            }
+        }.runTaskTimer(MetadataHandler.PLUGIN, 1, 1);
+    }
+
+    public static void shutdown() {
+        if (snapshotTask != null) snapshotTask.cancel();
+        snapshotTask = null;
+        if (buildExecutor != null) buildExecutor.shutdownNow();
+        buildExecutor = null;
+        worlds.clear();
+        SectionVisibilityGraph.clear();
+    }
+
+    /**
+     * Checks whether the section containing a point can be seen from the player's section through connected open space.
+     * This is a cheap pre-filter, a reachable section can still be hidden from the exact point.
+     */
+    public static boolean isSectionReachable(World world, UUID player, double eyeX, double eyeY, double eyeZ, double x, double y, double z) {
+        return SectionVisibilityGraph.isReachable(world, getWorldData(world), player, eyeX, eyeY, eyeZ, x, y, z);
+    }
+
+    public static void forgetPlayer(UUID player) {
+        SectionVisibilityGraph.forget(player);
+    }
+
+    /**
+     * Checks whether the segment between two points is clear of occluding blocks
+     *
+     * @return false if an occluding block or too many see-through blocks are in the way
+     */
+    public static boolean isPointVisible(World world, double fromX, double fromY, double fromZ, double toX, double toY, double toZ) {
+        WorldData worldData = getWorldData(world);
+        int x = (int) Math.floor(fromX);
+        int y = (int) Math.floor(fromY);
+        int z = (int) Math.floor(fromZ);
+        int endX = (int) Math.floor(toX);
+        int endY = (int) Math.floor(toY);
+        int endZ = (int) Math.floor(toZ);
+        double dx = toX - fromX;
+        double dy = toY - fromY;
+        double dz = toZ - fromZ;
+        int stepX = Integer.signum(endX - x);
+        int stepY = Integer.signum(endY - y);
+        int stepZ = Integer.signum(endZ - z);
+        // Distances are measured as fractions of the segment
+        double tDeltaX = stepX != 0 ? Math.abs(1 / dx) : Double.MAX_VALUE;
+        double tDeltaY = stepY != 0 ? Math.abs(1 / dy) : Double.MAX_VALUE;
+        double tDeltaZ = stepZ != 0 ? Math.abs(1 / dz) : Double.MAX_VALUE;
+        double tMaxX = stepX > 0 ? (x + 1 - fromX) / dx : stepX < 0 ? (fromX - x) / -dx : Double.MAX_VALUE;
+        double tMaxY = stepY > 0 ? (y + 1 - fromY) / dy : stepY < 0 ? (fromY - y) / -dy : Double.MAX_VALUE;
+        double tMaxZ = stepZ > 0 ? (z + 1 - fromZ) / dz : stepZ < 0 ? (fromZ - z) / -dz : Double.MAX_VALUE;
+
+        int seeThroughBlocks = 0;
+        int chunkX = Integer.MIN_VALUE;
+        int chunkZ = Integer.MIN_VALUE;
+        ChunkOcclusionData chunk = null;
+        int remainingSteps = Math.abs(endX - x) + Math.abs(endY - y) + Math.abs(endZ - z);
+        while (true) {
+            if (x >> 4 != chunkX || z >> 4 != chunkZ) {
+                chunkX = x >> 4;
+                chunkZ = z >> 4;
+                chunk = worldData.getOrRequest(chunkX, chunkZ);
+            }
+            if (chunk != null) {
+                byte opacity = chunk.getOpacity(x & 15, y, z & 15);
+                if (opacity == ChunkOcclusionData.OCCLUDING) return false;
+                if (opacity == ChunkOcclusionData.SEE_THROUGH && ++seeThroughBlocks >= MAX_SEE_THROUGH_BLOCKS) return false;
+            }
+            if (remainingSteps-- <= 0) return true;
+            if (tMaxX < tMaxY && tMaxX < tMaxZ) {
+                x += stepX;
+                tMaxX += tDeltaX;
+            } else if (tMaxY < tMaxZ) {
+                y += stepY;
+                tMaxY += tDeltaY;
+            } else {
+                z += stepZ;
+                tMaxZ += tDeltaZ;
+            }
+        }
+    }
+
+    /**
+     * Queues a chunk to be snapshotted again, called when blocks in it change
+     */
+    public static void markDirty(World world, int chunkX, int chunkZ) {
+        WorldData worldData = worlds.get(world.getUID());
+        if (worldData == null) return;
+        long key = chunkKey(chunkX, chunkZ);
+        if (worldData.chunks.containsKey(key)) worldData.requested.add(key);
+    }
+
+    private static WorldData getWorldData(World world) {
+        return worlds.computeIfAbsent(world.getUID(), k -> new WorldData(world.getUID()));
+    }
+
+    // Main thread, snapshots are cheap copies but still shouldn't all happen in one tick
+    private static void takeSnapshots() {
+        for (WorldData worldData : worlds.values()) {
+            if (worldData.requested.isEmpty()) continue;
+            World world = Bukkit.getWorld(worldData.worldId);
+            if (world == null) {
+                worlds.remove(worldData.worldId);
+                continue;
+            }
+            int taken = 0;
+            Iterator<Long> iterator = worldData.requested.iterator();
+            while (iterator.hasNext() && taken < MAX_SNAPSHOTS_PER_TICK) {
+                long key = iterator.next();
+                iterator.remove();
+                int chunkX = (int) (key >> 32);
+                int chunkZ = (int) key;
+                if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+                ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                int minHeight = world.getMinHeight();
+                int maxHeight = world.getMaxHeight();
+                buildExecutor.execute(() -> {
+                    try {
+                        worldData.chunks.put(key, ChunkOcclusionData.build(snapshot, minHeight, maxHeight));
+                        worldData.markChanged(chunkX, chunkZ);
+                        ChunkChangeTracker.markRebuilt(worldData.worldId, chunkX, chunkZ);
+                    } catch (Exception e) {
+                        MessageUtil.log("[Models] Failed to build occlusion data for chunk " + chunkX + ", " + chunkZ);
+                        e.printStackTrace();
+                    }
+                });
+                taken++;
+            }
+        }
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    static final class WorldData {
+        private static final int REGION_SHIFT = 2;
+        private static final int REGION_TABLE_SIZE = 1 << 12;
+
+        private final UUID worldId;
+        private final Map<Long, ChunkOcclusionData> chunks = new ConcurrentHashMap<>();
+        private final Set<Long> requested = ConcurrentHashMap.newKeySet();
+        // Bumped whenever chunk data is added or dropped
+        private final AtomicLong version = new AtomicLong();
+        // Version of the last change in each 4x4 chunk region, so cached section graphs only search again when chunks
+        // near them changed. Regions are hashed into a fixed size table, a collision only causes an unnecessary search
+        private final AtomicLongArray regionVersions = new AtomicLongArray(REGION_TABLE_SIZE);
+
+        private WorldData(UUID worldId) {
+            this.worldId = worldId;
+        }
+
+        ChunkOcclusionData getOrRequest(int chunkX, int chunkZ) {
+            long key = chunkKey(chunkX, chunkZ);
+            ChunkOcclusionData data = chunks.get(key);
+            if (data == null) requested.add(key);
+            return data;
+        }
+
+        long getVersion() {
+            return version.get();
+        }
+
+        // Called after the chunk data was changed, so searches that read the version before see the new data
+        private void markChanged(int chunkX, int chunkZ) {
+            long changed = version.incrementAndGet();
+            regionVersions.accumulateAndGet(regionSlot(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT), changed, Math::max);
+        }
+
+        /**
+         * Checks whether chunk data in the area was added or dropped after the given version
+         */
+        boolean hasChangedSince(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, long since) {
+            for (int regionX = minChunkX >> REGION_SHIFT; regionX <= maxChunkX >> REGION_SHIFT; regionX++) {
+                for (int regionZ = minChunkZ >> REGION_SHIFT; regionZ <= maxChunkZ >> REGION_SHIFT; regionZ++) {
+                    if (regionVersions.get(regionSlot(regionX, regionZ)) > since) return true;
+                }
+            }
+            return false;
+        }
+
+        private static int regionSlot(int regionX, int regionZ) {
+            long hash = (regionX * 0x9E3779B97F4A7C15L) ^ (regionZ * 0xC2B2AE3D27D4EB4FL);
+            hash ^= hash >>> 29;
+            return (int) hash & (REGION_TABLE_SIZE - 1);
+        }
+    }
+
+    public static class OcclusionEvents implements Listener {
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onChunkUnload(ChunkUnloadEvent event) {
+            WorldData worldData = worlds.get(event.getWorld().getUID());
+            if (worldData == null) return;
+            long key = chunkKey(event.getChunk().getX(), event.getChunk().getZ());
+            if (worldData.chunks.remove(key) != null) worldData.markChanged(event.getChunk().getX(), event.getChunk().getZ());
+            worldData.requested.remove(key);
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onWorldUnload(WorldUnloadEvent event) {
+            worlds.remove(event.getWorld().getUID());
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        public void onPlayerQuit(PlayerQuitEvent event) {
+            forgetPlayer(event.getPlayer().getUniqueId());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package de.erethon.daedalus.customentity.core.occlusion;
+
+import de.erethon.daedalus.config.DefaultConfig;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Section level cave culling, the same idea the client uses to skip rendering sections it can't possibly see.
+ * Starting at the player's section, a breadth first search walks into neighbouring sections, but only leaves a
+ * section through faces that are connected to the face it was entered through. Everything reached within the
+ * view distance is potentially visible, everything else is hidden behind solid terrain.
+ * The result is cached per player until they change section or chunk data within the search radius changes, and is
+ * searched again at most once per change even when several threads check the player's models at the same time.
+ */
+final class SectionVisibilityGraph {
+
+    private static final int[] FACE_X = {0, 0, 0, 0, -1, 1};
+    private static final int[] FACE_Y = {-1, 1, 0, 0, 0, 0};
+    private static final int[] FACE_Z = {0, 0, -1, 1, 0, 0};
+
+    private static final Map<UUID, PlayerReachability> reachabilities = new ConcurrentHashMap<>();
+
+    private static final class Reachability {
+        private final UUID worldId;
+        private final long origin;
+        private final int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+        // World version the search started at, changes after it invalidate the result
+        private final long computedAt;
+        private final LongOpenHashSet sections;
+        // Latest world version the result was confirmed for, so unchanged worlds skip the region check
+        private volatile long validAt;
+
+        private Reachability(UUID worldId, long origin, int originX, int originZ, int radius, long computedAt, LongOpenHashSet sections) {
+            this.worldId = worldId;
+            this.origin = origin;
+            this.minChunkX = originX - radius;
+            this.minChunkZ = originZ - radius;
+            this.maxChunkX = originX + radius;
+            this.maxChunkZ = originZ + radius;
+            this.computedAt = computedAt;
+            this.sections = sections;
+            this.validAt = computedAt;
+        }
+    }
+
+    private static final class PlayerReachability {
+        private volatile Reachability reachability;
+    }
+
+    private SectionVisibilityGraph() {
+    }
+
+    static boolean isReachable(World world, OcclusionEngine.WorldData worldData, UUID player, double eyeX, double eyeY, double eyeZ, double x, double y, double z) {
+        int originX = (int) Math.floor(eyeX) >> 4;
+        int originY = (int) Math.floor(eyeY) >> 4;
+        int originZ = (int) Math.floor(eyeZ) >> 4;
+        long origin = sectionKey(originX, originY, originZ);
+        PlayerReachability playerReachability = reachabilities.computeIfAbsent(player, k -> new PlayerReachability());
+        Reachability reachability = playerReachability.reachability;
+        if (!isCurrent(reachability, world, worldData, origin)) {
+            synchronized (playerReachability) {
+                // Another thread may have searched while this one waited
+                reachability = playerReachability.reachability;
+                if (!isCurrent(reachability, world, worldData, origin)) {
+                    long version = worldData.getVersion();
+                    reachability = new Reachability(world.getUID(), origin, originX, originZ, searchRadius(), version,
+                            search(world, worldData, originX, originY, originZ));
+                    playerReachability.reachability = reachability;
+                }
+            }
+        }
+        return reachability.sections.contains(sectionKey((int) Math.floor(x) >> 4, (int) Math.floor(y) >> 4, (int) Math.floor(z) >> 4));
+    }
+
+    private static boolean isCurrent(Reachability reachability, World world, OcclusionEngine.WorldData worldData, long origin) {
+        if (reachability == null || reachability.origin != origin || !reachability.worldId.equals(world.getUID())) return false;
+        long version = worldData.getVersion();
+        if (reachability.validAt == version) return true;
+        if (worldData.hasChangedSince(reachability.minChunkX, reachability.minChunkZ,
+                reachability.maxChunkX, reachability.maxChunkZ, reachability.computedAt)) return false;
+        reachability.validAt = version;
+        return true;
+    }
+
+    private static int searchRadius() {
+        return (DefaultConfig.maxModelViewDistance + DefaultConfig.viewDistanceHysteresis) / 16 + 1;
+    }
+
+    static void forget(UUID player) {
+        reachabilities.remove(player);
+    }
+
+    static void clear() {
+        reachabilities.clear();
+    }
+
+    private static LongOpenHashSet search(World world, OcclusionEngine.WorldData worldData, int originX, int originY, int originZ) {
+        int radius = searchRadius();
+        int minSectionY = world.getMinHeight() >> 4;
+        int maxSectionY = (world.getMaxHeight() - 1) >> 4;
+        LongOpenHashSet reachable = new LongOpenHashSet();
+        // Faces each section has already been entered through, a section is searched again when entered through a new face
+        Long2ByteOpenHashMap enteredFaces = new Long2ByteOpenHashMap();
+        int capacity = (2 * radius + 1) * (2 * radius + 1) * (2 * radius + 1) * 6 + 1;
+        int[] queueX = new int[capacity];
+        int[] queueY = new int[capacity];
+        int[] queueZ = new int[capacity];
+        byte[] queueFace = new byte[capacity];
+        int head = 0;
+        int tail = 0;
+        queueX[tail] = originX;
+        queueY[tail] = originY;
+        queueZ[tail] = originZ;
+        queueFace[tail++] = -1;
+        reachable.add(sectionKey(originX, originY, originZ));
+
+        while (head < tail) {
+            int sectionX = queueX[head];
+            int sectionY = queueY[head];
+            int sectionZ = queueZ[head];
+            int entryFace = queueFace[head++];
+            ChunkOcclusionData chunk = worldData.getOrRequest(sectionX, sectionZ);
+            for (int exitFace = 0; exitFace < 6; exitFace++) {
+                // Unknown chunks count as open
+                if (entryFace != -1 && chunk != null && !chunk.isConnected(sectionY, entryFace, exitFace)) continue;
+                int nextX = sectionX + FACE_X[exitFace];
+                int nextY = sectionY + FACE_Y[exitFace];
+                int nextZ = sectionZ + FACE_Z[exitFace];
+                if (nextY < minSectionY || nextY > maxSectionY) continue;
+                if (Math.abs(nextX - originX) > radius || Math.abs(nextY - originY) > radius || Math.abs(nextZ - originZ) > radius) continue;
+                int nextEntryFace = exitFace ^ 1;
+                long nextKey = sectionKey(nextX, nextY, nextZ);
+                byte entered = enteredFaces.get(nextKey);
+                if ((entered & (1 << nextEntryFace)) != 0) continue;
+                enteredFaces.put(nextKey, (byte) (entered | (1 << nextEntryFace)));
+                reachable.add(nextKey);
+                if (tail == capacity) continue;
+                queueX[tail] = nextX;
+                queueY[tail] = nextY;
+                queueZ[tail] = nextZ;
+                queueFace[tail++] = (byte) nextEntryFace;
+            }
+        }
+        return reachable;
+    }
+
+    private static long sectionKey(int sectionX, int sectionY, int sectionZ) {
+        return ((long) (sectionX & 0x3FFFFFF) << 38) | ((long) (sectionZ & 0x3FFFFFF) << 12) | (sectionY & 0xFFF);
+    }
+}
@@ -1,20 +1,44 @@
 package de.erethon.daedalus.dataconverter;
 
+import de.erethon.daedalus.config.DefaultConfig;
 import de.erethon.daedalus.utils.InterpolationType;
 import de.erethon.daedalus.utils.LoopType;
 import de.erethon.daedalus.utils.MathToolkit;
 import de.erethon.bedrock.chat.MessageUtil;
+import org.joml.Vector3f;
 
 import java.util.*;
 
 public class AnimationBlueprint {
 
+    // How far the client-side linear interpolation may drift from the real pose before a frame has to be sent
+    private static final float ROTATION_TOLERANCE = 1f; // degrees
+    private static final float POSITION_TOLERANCE = 1 / 64f; // blocks
+    private static final float SCALE_TOLERANCE = 0.01f;
+
+    // Channels of a baked frame, the scale channel is NaN when the animation doesn't scale the bone in that frame
+    public static final int CHANNELS = 7;
+    public static final int X_ROTATION = 0, Y_ROTATION = 1, Z_ROTATION = 2;
+    public static final int X_POSITION = 3, Y_POSITION = 4, Z_POSITION = 5;
+    public static final int SCALE = 6;
+
     private final HashMap<BoneBlueprint, List<Keyframe>> boneKeyframes = new HashMap<>();
-    private final HashMap<BoneBlueprint, AnimationFrame[]> animationFrames = new HashMap<>();
+    // Baked frames of every animated bone laid out as [frame][slot][channel], slots are dense per animation
+    private float[] frames = new float[0];
+    private BoneBlueprint[] slotBones = new BoneBlueprint[0];
+    private int[] slotOrdinals = new int[0];
+    // How far each slot's bone may rotate over one sampling step before the bones it carries drift too far off the
+    // straight line the client interpolates their positions along, in degrees
+    private float[] slotMaxRotations = new float[0];
+    // Slot of each bone by bone ordinal, -1 for bones this animation doesn't touch
+    private int[] slotsByOrdinal = new int[0];
+    // Ordinals of the bones this animation doesn't touch, they are kept in their rest pose while it plays
+    private int[] restOrdinals = new int[0];
     private LoopType loopType;
     private String animationName;
     private SkeletonBlueprint skeletonBlueprint;
     private int duration;
+    private int[] sampleSteps;
 
     public AnimationBlueprint(Object data, String modelName, SkeletonBlueprint skeletonBlueprint) {
         Map<String, Object> animationData;
@@ -29,13 +53,15 @@ public class AnimationBlueprint {
         this.skeletonBlueprint = skeletonBlueprint;
         initializeGlobalValues(animationData);
 
-        if (animationData.get("animators") == null) return;
         //In BBModel files, each bone holds the data for their transformations, so data is stored from the bone's perspective
-        ((Map<String, Object>) animationData.get("animators")).entrySet().forEach(pair -> initializeBones((Map<String, Object>) pair.getValue(), modelName, animationName));
+        //Animations without animators are still baked, so they hold every bone in the rest pose
+        if (animationData.get("animators") != null)
+            ((Map<String, Object>) animationData.get("animators")).entrySet().forEach(pair -> initializeBones((Map<String, Object>) pair.getValue(), modelName, animationName));
 
         //Process the keyframes
         try {
             interpolateKeyframes();
+            bakeSampleSteps();
         } catch (Exception e) {
             MessageUtil.log("Failed to interpolate animations for model " + modelName + "! Animation name: " + animationName);
             e.printStackTrace();
@@ -67,10 +93,27 @@ public class AnimationBlueprint {
     }
 
     private void interpolateKeyframes() {
-        boneKeyframes.forEach(this::interpolateBoneKeyframes);
+        slotBones = boneKeyframes.keySet().toArray(new BoneBlueprint[0]);
+        slotsByOrdinal = new int[skeletonBlueprint.getBoneCount()];
+        Arrays.fill(slotsByOrdinal, -1);
+        slotOrdinals = new int[slotBones.length];
+        slotMaxRotations = new float[slotBones.length];
+        for (int slot = 0; slot < slotBones.length; slot++) {
+            slotOrdinals[slot] = slotBones[slot].getOrdinal();
+            slotMaxRotations[slot] = maxRotationPerStep(slotBones[slot]);
+            slotsByOrdinal[slotOrdinals[slot]] = slot;
+        }
+        restOrdinals = new int[slotsByOrdinal.length - slotBones.length];
+        for (int ordinal = 0, rest = 0; ordinal < slotsByOrdinal.length; ordinal++)
+            if (slotsByOrdinal[ordinal] < 0) restOrdinals[rest++] = ordinal;
+
+        frames = new float[duration * slotBones.length * CHANNELS];
+        for (int i = SCALE; i < frames.length; i += CHANNELS) frames[i] = Float.NaN;
+        for (int slot = 0; slot < slotBones.length; slot++)
+            interpolateBoneKeyframes(slot, boneKeyframes.get(slotBones[slot]));
     }
 
-    private void interpolateBoneKeyframes(BoneBlueprint boneBlueprint, List<Keyframe> keyframes) {
+    private void interpolateBoneKeyframes(int slot, List<Keyframe> keyframes) {
         List<Keyframe> rotationKeyframes = new ArrayList<>();
         List<Keyframe> positionKeyframes = new ArrayList<>();
         List<Keyframe> scaleKeyframes = new ArrayList<>();
@@ -82,16 +125,19 @@ public class AnimationBlueprint {
             }
         }
 
-        AnimationFrame[] animationFramesArray = new AnimationFrame[duration];
-        for (int i = 0; i < animationFramesArray.length; i++)
-            animationFramesArray[i] = new AnimationFrame();
-
         //Interpolation time
-        interpolateRotations(animationFramesArray, rotationKeyframes);
-        interpolateTranslations(animationFramesArray, positionKeyframes);
-        interpolateScales(animationFramesArray, scaleKeyframes);
+        interpolateRotations(slot, rotationKeyframes);
+        interpolateTranslations(slot, positionKeyframes);
+        interpolateScales(slot, scaleKeyframes);
+    }
 
-        this.animationFrames.put(boneBlueprint, animationFramesArray);
+    private void setChannels(int frame, int slot, int firstChannel, float x, float y, float z) {
+        //Keyframes past the end of the animation would spill into the frames of the next slot
+        if (frame >= duration) return;
+        int offset = getFrameOffset(frame, slot) + firstChannel;
+        frames[offset] = x;
+        frames[offset + 1] = y;
+        frames[offset + 2] = z;
     }
 
     /**
@@ -118,7 +164,7 @@ public class AnimationBlueprint {
         }
     }
 
-    private void interpolateRotations(AnimationFrame[] animationFramesArray, List<Keyframe> rotationKeyframes) {
+    private void interpolateRotations(int slot, List<Keyframe> rotationKeyframes) {
         Keyframe firstFrame = null;
         Keyframe previousFrame = null;
         Keyframe lastFrame = null;
@@ -141,9 +187,10 @@ public class AnimationBlueprint {
                 int currentFrame = j + previousFrame.getTimeInTicks();
                 float t = j / (float) durationBetweenKeyframes;
 
-                animationFramesArray[currentFrame].xRotation = interpolateWithType(interpType, previousFrame.getDataX(), animationFrame.getDataX(), t);
-                animationFramesArray[currentFrame].yRotation = interpolateWithType(interpType, previousFrame.getDataY(), animationFrame.getDataY(), t);
-                animationFramesArray[currentFrame].zRotation = interpolateWithType(interpType, previousFrame.getDataZ(), animationFrame.getDataZ(), t);
+                setChannels(currentFrame, slot, X_ROTATION,
+                        interpolateWithType(interpType, previousFrame.getDataX(), animationFrame.getDataX(), t),
+                        interpolateWithType(interpType, previousFrame.getDataY(), animationFrame.getDataY(), t),
+                        interpolateWithType(interpType, previousFrame.getDataZ(), animationFrame.getDataZ(), t));
             }
             previousFrame = animationFrame;
             if (animationFrame.getTimeInTicks() > lastFrame.getTimeInTicks()) lastFrame = animationFrame;
@@ -153,23 +200,19 @@ public class AnimationBlueprint {
             int durationBetweenKeyframes = duration - lastFrame.getTimeInTicks();
             for (int j = 0; j < durationBetweenKeyframes; j++) {
                 int currentFrame = j + previousFrame.getTimeInTicks();
-                animationFramesArray[currentFrame].xRotation = lastFrame.getDataX();
-                animationFramesArray[currentFrame].yRotation = lastFrame.getDataY();
-                animationFramesArray[currentFrame].zRotation = lastFrame.getDataZ();
+                setChannels(currentFrame, slot, X_ROTATION, lastFrame.getDataX(), lastFrame.getDataY(), lastFrame.getDataZ());
             }
         }
         if (firstFrame != null && firstFrame.getTimeInTicks() > 0) {
             int durationBetweenKeyframes = firstFrame.getTimeInTicks();
             durationBetweenKeyframes = Math.min(durationBetweenKeyframes, duration - 1);
             for (int j = 0; j < durationBetweenKeyframes; j++) {
-                animationFramesArray[j].xRotation = firstFrame.getDataX();
-                animationFramesArray[j].yRotation = firstFrame.getDataY();
-                animationFramesArray[j].zRotation = firstFrame.getDataZ();
+                setChannels(j, slot, X_ROTATION, firstFrame.getDataX(), firstFrame.getDataY(), firstFrame.getDataZ());
             }
         }
     }
 
-    private void interpolateTranslations(AnimationFrame[] animationFramesArray, List<Keyframe> positionKeyframes) {
+    private void interpolateTranslations(int slot, List<Keyframe> positionKeyframes) {
         Keyframe firstFrame = null;
         Keyframe previousFrame = null;
         Keyframe lastFrame = null;
@@ -190,9 +233,10 @@ public class AnimationBlueprint {
                 int currentFrame = j + previousFrame.getTimeInTicks();
                 float t = j / (float) durationBetweenKeyframes;
 
-                animationFramesArray[currentFrame].xPosition = interpolateWithType(interpType, previousFrame.getDataX(), animationFrame.getDataX(), t) / 16f;
-                animationFramesArray[currentFrame].yPosition = interpolateWithType(interpType, previousFrame.getDataY(), animationFrame.getDataY(), t) / 16f;
-                animationFramesArray[currentFrame].zPosition = interpolateWithType(interpType, previousFrame.getDataZ(), animationFrame.getDataZ(), t) / 16f;
+                setChannels(currentFrame, slot, X_POSITION,
+                        interpolateWithType(interpType, previousFrame.getDataX(), animationFrame.getDataX(), t) / 16f,
+                        interpolateWithType(interpType, previousFrame.getDataY(), animationFrame.getDataY(), t) / 16f,
+                        interpolateWithType(interpType, previousFrame.getDataZ(), animationFrame.getDataZ(), t) / 16f);
             }
             previousFrame = animationFrame;
             if (animationFrame.getTimeInTicks() > lastFrame.getTimeInTicks()) lastFrame = animationFrame;
@@ -202,23 +246,19 @@ public class AnimationBlueprint {
             int durationBetweenKeyframes = duration - lastFrame.getTimeInTicks();
             for (int j = 0; j < durationBetweenKeyframes; j++) {
                 int currentFrame = j + previousFrame.getTimeInTicks();
-                animationFramesArray[currentFrame].xPosition = lastFrame.getDataX() / 16f;
-                animationFramesArray[currentFrame].yPosition = lastFrame.getDataY() / 16f;
-                animationFramesArray[currentFrame].zPosition = lastFrame.getDataZ() / 16f;
+                setChannels(currentFrame, slot, X_POSITION, lastFrame.getDataX() / 16f, lastFrame.getDataY() / 16f, lastFrame.getDataZ() / 16f);
             }
         }
         if (firstFrame != null && firstFrame.getTimeInTicks() > 0) {
             int durationBetweenKeyframes = firstFrame.getTimeInTicks();
             durationBetweenKeyframes = Math.min(durationBetweenKeyframes, duration - 1);
             for (int j = 0; j < durationBetweenKeyframes; j++) {
-                animationFramesArray[j].xPosition = firstFrame.getDataX() / 16f;
-                animationFramesArray[j].yPosition = firstFrame.getDataY() / 16f;
-                animationFramesArray[j].zPosition = firstFrame.getDataZ() / 16f;
+                setChannels(j, slot, X_POSITION, firstFrame.getDataX() / 16f, firstFrame.getDataY() / 16f, firstFrame.getDataZ() / 16f);
             }
         }
     }
 
-    private void interpolateScales(AnimationFrame[] animationFramesArray, List<Keyframe> scaleKeyframes) {
+    private void interpolateScales(int slot, List<Keyframe> scaleKeyframes) {
         Keyframe previousFrame = null;
         for (int i = 0; i < scaleKeyframes.size(); i++) {
             Keyframe animationFrame = scaleKeyframes.get(i);
@@ -235,12 +275,103 @@ public class AnimationBlueprint {
                 int currentFrame = j + previousFrame.getTimeInTicks();
                 float t = j / (float) durationBetweenKeyframes;
 
-                animationFramesArray[currentFrame].scale = interpolateWithType(interpType, previousFrame.getDataX(), animationFrame.getDataX(), t);
+                if (currentFrame >= duration) break;
+                frames[getFrameOffset(currentFrame, slot) + SCALE] = interpolateWithType(interpType, previousFrame.getDataX(), animationFrame.getDataX(), t);
             }
             previousFrame = animationFrame;
         }
     }
 
+    /**
+     * Walks the animation from the first frame and picks, for every frame that gets sent, the largest step for which
+     * linearly interpolating to the frame that many ticks later stays within the tolerances for every bone.
+     * Frames in between send points are left at 0.
+     */
+    private void bakeSampleSteps() {
+        sampleSteps = new int[duration];
+        int maxStep = Math.max(1, DefaultConfig.maxAnimationSampleStep);
+        int frame = 0;
+        while (frame < duration) {
+            int step = 1;
+            for (int candidate = Math.min(maxStep, duration - 1 - frame); candidate > 1; candidate--) {
+                if (isLinearBetween(frame, candidate)) {
+                    step = candidate;
+                    break;
+                }
+            }
+            sampleSteps[frame] = step;
+            frame += step;
+        }
+    }
+
+    /**
+     * Every bone is its own display entity, placed where the global transform of its whole parent chain puts it. When a
+     * bone rotates, its own center and every bone below it move along arcs around its pivot, but the client moves
+     * them in a straight line between two samples. The arc bulges out by reach * (1 - cos(angle / 2)), so the angle
+     * a step may cover is limited by the farthest bone the rotation carries.
+     */
+    private static float maxRotationPerStep(BoneBlueprint boneBlueprint) {
+        Vector3f pivot = boneBlueprint.getModelCenter().sub(boneBlueprint.getBlueprintModelPivot());
+        float reach = reach(boneBlueprint, pivot);
+        if (reach <= POSITION_TOLERANCE) return Float.MAX_VALUE;
+        return (float) Math.toDegrees(2 * Math.acos(1 - POSITION_TOLERANCE / reach));
+    }
+
+    // Distance from the pivot to the farthest center of the bone and the bones below it, in blocks at a scale of 1
+    private static float reach(BoneBlueprint boneBlueprint, Vector3f pivot) {
+        float reach = boneBlueprint.getModelCenter().distance(pivot);
+        for (BoneBlueprint child : boneBlueprint.getBoneBlueprintChildren())
+            reach = Math.max(reach, reach(child, pivot));
+        return reach;
+    }
+
+    private boolean isLinearBetween(int frame, int step) {
+        for (int slot = 0; slot < slotBones.length; slot++) {
+            int start = getFrameOffset(frame, slot);
+            int end = getFrameOffset(frame + step, slot);
+            // Sum of the euler angle changes, an upper bound of the angle the bone turns by
+            float rotation = Math.abs(frames[end + X_ROTATION] - frames[start + X_ROTATION]) +
+                    Math.abs(frames[end + Y_ROTATION] - frames[start + Y_ROTATION]) +
+                    Math.abs(frames[end + Z_ROTATION] - frames[start + Z_ROTATION]);
+            if (rotation > slotMaxRotations[slot]) return false;
+            for (int i = 1; i < step; i++) {
+                int actual = getFrameOffset(frame + i, slot);
+                float t = i / (float) step;
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    float tolerance = channel < X_POSITION ? ROTATION_TOLERANCE : channel < SCALE ? POSITION_TOLERANCE : SCALE_TOLERANCE;
+                    float startValue = frames[start + channel];
+                    float endValue = frames[end + channel];
+                    float actualValue = frames[actual + channel];
+                    if (channel == SCALE) {
+                        startValue = scaleOf(startValue);
+                        endValue = scaleOf(endValue);
+                        actualValue = scaleOf(actualValue);
+                    }
+                    if (Math.abs(MathToolkit.lerp(startValue, endValue, t) - actualValue) > tolerance) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turns a baked scale channel into the scale to apply, frames without a scale are unscaled
+     */
+    public static float scaleOf(float scale) {
+        return Float.isNaN(scale) ? 1f : scale;
+    }
+
+    /**
+     * Gets how many ticks the client should interpolate when this frame is sent
+     *
+     * @param frame Frame of the animation
+     * @return The step to the next frame that gets sent, or 0 if this frame is skipped
+     */
+    public int getSampleStep(int frame) {
+        if (sampleSteps == null || frame < 0 || frame >= sampleSteps.length) return 1;
+        return sampleSteps[frame];
+    }
+
     // Getters
     public SkeletonBlueprint getSkeletonBlueprint() {
         return skeletonBlueprint;
@@ -257,8 +388,45 @@ public class AnimationBlueprint {
         return duration;
     }
 
-    public HashMap<BoneBlueprint, AnimationFrame[]> getAnimationFrames() {
-        return animationFrames;
+    /**
+     * Baked frames of the animation, read them at {@link #getFrameOffset(int, int)} plus one of the channels
+     */
+    public float[] getFrames() {
+        return frames;
+    }
+
+    public int getFrameOffset(int frame, int slot) {
+        return (frame * slotBones.length + slot) * CHANNELS;
+    }
+
+    /**
+     * Number of bones the animation has frames for
+     */
+    public int getSlotCount() {
+        return slotBones.length;
+    }
+
+    public BoneBlueprint getSlotBone(int slot) {
+        return slotBones[slot];
+    }
+
+    /**
+     * Gets the ordinal of the bone in a slot, to find the bone of an entity's skeleton without going through names
+     */
+    public int getSlotOrdinal(int slot) {
+        return slotOrdinals[slot];
+    }
+
+    public int[] getRestOrdinals() {
+        return restOrdinals;
+    }
+
+    /**
+     * @return the slot of the bone in the baked frames, or -1 if the animation doesn't animate it
+     */
+    public int getSlot(BoneBlueprint boneBlueprint) {
+        int ordinal = boneBlueprint.getOrdinal();
+        return ordinal < slotsByOrdinal.length ? slotsByOrdinal[ordinal] : -1;
     }
 
     public HashMap<BoneBlueprint, List<Keyframe>> getBoneKeyframes() {
@@ -1,14 +0,0 @@
-package de.erethon.daedalus.dataconverter;
-
-public class AnimationFrame {
-    public float xRotation;
-    public float yRotation;
-    public float zRotation;
-    public float xPosition;
-    public float yPosition;
-    public float zPosition;
-    public Float scale = null;
-
-    public AnimationFrame(){
-    }
-}
@@ -28,10 +28,13 @@ public class BoneBlueprint {
     private final String boneName;
     private final String originalModelName;
     private final String originalBoneName;
+    //Dense index of the bone in its skeleton, used to address it in baked animation frames
+    private final int ordinal;
     private List<BoneBlueprint> boneBlueprintChildren = new ArrayList<>();
     private String modelID = null;
 
     private boolean nameTag = false;
+    private boolean impostor = false;
     private BoneBlueprint parent = null;
     private boolean isDisplayModel = true;
     //Actual center of the model in the model space
@@ -40,6 +43,9 @@ public class BoneBlueprint {
     private Vector3f blueprintModelPivot;
     private Vector3f blueprintOriginalBoneRotation = new Vector3f();
     private boolean isHead = false;
+    //Diagonal of the bounds of all cubes of the bone, in blocks
+    private float worldExtent = 0;
+    private final Vector3f hitboxHalfExtents = new Vector3f();
     /**
      * This is a bit of a cursed solution, but there's not that many ways around it.
      * The purpose of this bone is to create a parallel bone for meta bones without interfering with the structural bones.
@@ -62,7 +68,7 @@ public class BoneBlueprint {
         this.originalModelName = modelName;
         this.parent = parent;
         //Add bone to the map
-        skeletonBlueprint.getBoneMap().put(originalBoneName, this);
+        ordinal = skeletonBlueprint.registerBone(originalBoneName, this);
         blueprintModelPivot = new Vector3f();
         blueprintOriginalBoneRotation = new Vector3f();
     }
@@ -92,7 +98,7 @@ public class BoneBlueprint {
         if (originalBoneName.startsWith("h_")) isHead = true;
 
         //Add bone to the map
-        skeletonBlueprint.getBoneMap().put(originalBoneName, this);
+        ordinal = skeletonBlueprint.registerBone(originalBoneName, this);
 
         //Initialize child data
         processChildren(boneJSON, modelName, projectResolution, values, textureReferences, skeletonBlueprint);
@@ -110,12 +116,47 @@ public class BoneBlueprint {
         nameTag = true;
 
         //Add bone to the map
-        skeletonBlueprint.getBoneMap().put(originalBoneName, this);
+        ordinal = skeletonBlueprint.registerBone(originalBoneName, this);
 
         //Simple center of the bone
         processBoneValues(boneJSON);
     }
 
+    /**
+     * This is for the impostor bones, which hold the baked cubes of the whole model, see {@link ImpostorBlueprint}
+     *
+     * @param modelName
+     * @param impostorName
+     * @param elements          Cube JSONs already shifted into the impostor's resource pack space
+     * @param modelCenter       Center of the impostor in the model space, in resource pack units
+     * @param textureReferences
+     * @param parent
+     * @param skeletonBlueprint
+     */
+    BoneBlueprint(String modelName, String impostorName, List<Object> elements, Vector3f modelCenter, Map<String, Map<String, Object>> textureReferences, BoneBlueprint parent, SkeletonBlueprint skeletonBlueprint) {
+        this.originalBoneName = impostorName;
+        this.boneName = "erethon:" + modelName + "/" + StringToResourcePackFilename.convert(originalBoneName);
+        this.originalModelName = modelName;
+        this.parent = parent;
+        impostor = true;
+
+        //Add bone to the map
+        ordinal = skeletonBlueprint.registerBone(originalBoneName, this);
+
+        //Impostors are in the rest pose, so the pivot is the model origin
+        blueprintModelCenter = modelCenter;
+        blueprintModelPivot = getModelCenter();
+        Map<String, Object> textureReferencesClone = new HashMap<>(textureReferences);
+        setDisplay(textureReferencesClone);
+        textureReferencesClone.put("elements", elements);
+        writeFile(modelName, StringToResourcePackFilename.convert(originalBoneName), textureReferencesClone);
+        modelID = boneName;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
     public Vector3f getBlueprintOriginalBoneRotation() {
         return new Vector3f(blueprintOriginalBoneRotation);
     }
@@ -129,6 +170,20 @@ public class BoneBlueprint {
         return new Vector3f(blueprintModelCenter).mul(5 / 32f);
     }
 
+    /**
+     * Size of the bone in blocks at a scale of 1, 0 for bones without cubes
+     */
+    public float getWorldExtent() {
+        return worldExtent;
+    }
+
+    /**
+     * Half size of the box around the cubes of the bone in blocks at a scale of 1, the box is centered on the bone
+     */
+    public Vector3f getHitboxHalfExtents() {
+        return new Vector3f(hitboxHalfExtents);
+    }
+
     public Vector3f getBlueprintModelPivot() {
         return new Vector3f(blueprintModelPivot);
     }
@@ -150,6 +205,9 @@ public class BoneBlueprint {
         float xSize = Math.abs(highestX - lowestX);
         float ySize = Math.abs(highestY - lowestY);
         float zSize = Math.abs(highestZ - lowestZ);
+        //Same conversion as the model center, from resource pack units to blocks
+        worldExtent = (float) Math.sqrt(xSize * xSize + ySize * ySize + zSize * zSize) * 5 / 32f;
+        hitboxHalfExtents.set(xSize, ySize, zSize).mul(5 / 64f);
 
         //If the bone exceeds (16+32)*4 in size (remember, this is scaled) then it is too large to be rendered
         //This is because the lowest value is -16, the highest is +32 and the model is scaled up by 4x
@@ -321,6 +379,23 @@ public class BoneBlueprint {
         return parent;
     }
 
+    public boolean isImpostor() {
+        return impostor;
+    }
+
+    //Model IDs are assigned after conversion, so this can't rely on isDisplayModel
+    boolean hasDisplayedCubes() {
+        return isDisplayModel && !cubeBlueprintChildren.isEmpty();
+    }
+
+    List<CubeBlueprint> getCubes() {
+        return cubeBlueprintChildren;
+    }
+
+    Vector3f getBlueprintModelCenterUnits() {
+        return new Vector3f(blueprintModelCenter);
+    }
+
     public boolean isHead() {
         return isHead;
     }
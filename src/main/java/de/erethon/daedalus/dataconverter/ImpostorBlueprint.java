@@ -0,0 +1,140 @@
+package de.erethon.daedalus.dataconverter;
+
+import org.joml.Vector3f;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bakes every cube of a model in its rest pose into as few item models as possible, so far away viewers can be shown
+ * one or two entities instead of the whole skeleton. Item models can't be larger than 48 units on any axis, cubes that
+ * don't fit are spread over several chunks.
+ * Bone rotations in the rest pose aren't baked, models using them don't get an impostor.
+ */
+public class ImpostorBlueprint {
+    //Elements have to stay within -16 to +32 in resource pack units
+    private static final float MAX_MODEL_SIZE = 48;
+    //Below this an impostor doesn't save enough entities to be worth the extra model
+    private static final int MIN_DISPLAY_BONES = 4;
+    private static final int MAX_CHUNKS = 8;
+
+    private ImpostorBlueprint() {
+    }
+
+    /**
+     * Generates the impostor bones for a model
+     *
+     * @param bones Top level bones of the model
+     * @return the impostor bones, empty if the model shouldn't have an impostor
+     */
+    public static List<BoneBlueprint> generate(List<BoneBlueprint> bones,
+                                               Map<String, Map<String, Object>> textureReferences,
+                                               String modelName,
+                                               BoneBlueprint parent,
+                                               SkeletonBlueprint skeletonBlueprint) {
+        List<BoneBlueprint> displayBones = new ArrayList<>();
+        for (BoneBlueprint bone : bones) {
+            if (!collectDisplayBones(bone, displayBones)) return List.of();
+        }
+        if (displayBones.size() < MIN_DISPLAY_BONES) return List.of();
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (BoneBlueprint bone : displayBones) {
+            //The cubes were shifted by the bone offset, which is the bone center minus 8
+            Vector3f boneOffset = bone.getBlueprintModelCenterUnits().sub(8, 8, 8);
+            for (CubeBlueprint cube : bone.getCubes()) {
+                Vector3f from = new Vector3f(cube.getFrom()).add(boneOffset);
+                Vector3f to = new Vector3f(cube.getTo()).add(boneOffset);
+                if (!addToChunk(chunks, cube, boneOffset, from, to)) return List.of();
+            }
+        }
+        if (chunks.isEmpty() || chunks.size() > MAX_CHUNKS) return List.of();
+
+        List<BoneBlueprint> impostors = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            Vector3f size = new Vector3f(chunk.max).sub(chunk.min);
+            //Centers the chunk on 8,8,8 like the cubes of a bone
+            Vector3f chunkOffset = new Vector3f(chunk.min).sub(new Vector3f(8, 8, 8).sub(new Vector3f(size).mul(0.5f)));
+            List<Object> elements = new ArrayList<>();
+            for (int j = 0; j < chunk.cubes.size(); j++) {
+                elements.add(bakeCube(chunk.cubes.get(j), chunk.boneOffsets.get(j), chunkOffset));
+            }
+            impostors.add(new BoneBlueprint(modelName, "daedalus_impostor_" + i, elements,
+                    new Vector3f(chunkOffset).add(8, 8, 8), textureReferences, parent, skeletonBlueprint));
+        }
+        return impostors;
+    }
+
+    private static boolean collectDisplayBones(BoneBlueprint bone, List<BoneBlueprint> displayBones) {
+        if (bone.isNameTag()) return true;
+        if (bone.getBlueprintOriginalBoneRotation().lengthSquared() > 0) return false;
+        if (bone.hasDisplayedCubes()) displayBones.add(bone);
+        for (BoneBlueprint child : bone.getBoneBlueprintChildren()) {
+            if (!collectDisplayBones(child, displayBones)) return false;
+        }
+        return true;
+    }
+
+    //First fit, a cube goes into the first chunk that stays within the size limit with it
+    private static boolean addToChunk(List<Chunk> chunks, CubeBlueprint cube, Vector3f boneOffset, Vector3f from, Vector3f to) {
+        Vector3f min = new Vector3f(from).min(to);
+        Vector3f max = new Vector3f(from).max(to);
+        if (max.x - min.x > MAX_MODEL_SIZE || max.y - min.y > MAX_MODEL_SIZE || max.z - min.z > MAX_MODEL_SIZE) return false;
+        for (Chunk chunk : chunks) {
+            if (chunk.fits(min, max)) {
+                chunk.add(cube, boneOffset, min, max);
+                return true;
+            }
+        }
+        Chunk chunk = new Chunk(min, max);
+        chunk.add(cube, boneOffset, min, max);
+        chunks.add(chunk);
+        return true;
+    }
+
+    private static Map<String, Object> bakeCube(CubeBlueprint cube, Vector3f boneOffset, Vector3f chunkOffset) {
+        Vector3f shift = new Vector3f(boneOffset).sub(chunkOffset);
+        Map<String, Object> cubeJSON = new HashMap<>(cube.getCubeJSON());
+        Vector3f from = new Vector3f(cube.getFrom()).add(shift);
+        Vector3f to = new Vector3f(cube.getTo()).add(shift);
+        cubeJSON.put("from", List.of(from.x, from.y, from.z));
+        cubeJSON.put("to", List.of(to.x, to.y, to.z));
+        if (cubeJSON.get("rotation") instanceof Map<?, ?> rotation && rotation.get("origin") instanceof List<?> origin) {
+            Map<String, Object> newRotation = new HashMap<>((Map<String, Object>) rotation);
+            newRotation.put("origin", List.of(
+                    ((Number) origin.get(0)).doubleValue() + shift.x,
+                    ((Number) origin.get(1)).doubleValue() + shift.y,
+                    ((Number) origin.get(2)).doubleValue() + shift.z));
+            cubeJSON.put("rotation", newRotation);
+        }
+        return cubeJSON;
+    }
+
+    private static final class Chunk {
+        private final Vector3f min;
+        private final Vector3f max;
+        private final List<CubeBlueprint> cubes = new ArrayList<>();
+        private final List<Vector3f> boneOffsets = new ArrayList<>();
+
+        private Chunk(Vector3f min, Vector3f max) {
+            this.min = new Vector3f(min);
+            this.max = new Vector3f(max);
+        }
+
+        private boolean fits(Vector3f cubeMin, Vector3f cubeMax) {
+            return Math.max(max.x, cubeMax.x) - Math.min(min.x, cubeMin.x) <= MAX_MODEL_SIZE &&
+                    Math.max(max.y, cubeMax.y) - Math.min(min.y, cubeMin.y) <= MAX_MODEL_SIZE &&
+                    Math.max(max.z, cubeMax.z) - Math.min(min.z, cubeMin.z) <= MAX_MODEL_SIZE;
+        }
+
+        private void add(CubeBlueprint cube, Vector3f boneOffset, Vector3f cubeMin, Vector3f cubeMax) {
+            cubes.add(cube);
+            boneOffsets.add(boneOffset);
+            min.min(cubeMin);
+            max.max(cubeMax);
+        }
+    }
+}
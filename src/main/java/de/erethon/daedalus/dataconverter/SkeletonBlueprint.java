@@ -8,9 +8,12 @@ import java.util.Map;
 public class SkeletonBlueprint {
     //In BlockBench models are referred to by name for animations, and names are unique
     private final HashMap<String, BoneBlueprint> boneMap = new HashMap<>();
+    //Every bone by its ordinal, bone names can collide so this can hold more bones than the map
+    private final List<BoneBlueprint> bones = new ArrayList<>();
     private final List<BoneBlueprint> mainModel = new ArrayList<>();
     private String modelName = "Default Name";
     private HitboxBlueprint hitbox;
+    private List<BoneBlueprint> impostors = List.of();
 
     public SkeletonBlueprint(double projectResolution,
                              List outlinerJSON,
@@ -37,10 +40,34 @@ public class SkeletonBlueprint {
             }
         }
 
+        impostors = ImpostorBlueprint.generate(rootChildren, textureReferences, modelName, rootBone, this);
+        rootChildren.addAll(impostors);
         rootBone.setBoneBlueprintChildren(rootChildren);
         mainModel.add(rootBone);
     }
 
+    /**
+     * Adds a bone to the skeleton and gives it the next ordinal
+     *
+     * @return the ordinal of the bone
+     */
+    int registerBone(String boneName, BoneBlueprint boneBlueprint) {
+        boneMap.put(boneName, boneBlueprint);
+        bones.add(boneBlueprint);
+        return bones.size() - 1;
+    }
+
+    /**
+     * Number of bones, ordinals go from 0 up to this
+     */
+    public int getBoneCount() {
+        return bones.size();
+    }
+
+    public BoneBlueprint getBone(int ordinal) {
+        return bones.get(ordinal);
+    }
+
     public HashMap<String, BoneBlueprint> getBoneMap() {
         return boneMap;
     }
@@ -53,6 +80,17 @@ public class SkeletonBlueprint {
         return modelName;
     }
 
+    /**
+     * Low detail bones holding the whole model in its rest pose, empty if the model has none
+     */
+    public List<BoneBlueprint> getImpostors() {
+        return impostors;
+    }
+
+    public boolean hasImpostors() {
+        return !impostors.isEmpty();
+    }
+
     public HitboxBlueprint getHitbox() {
         return hitbox;
     }
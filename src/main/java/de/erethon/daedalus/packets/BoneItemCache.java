@@ -0,0 +1,54 @@
+package de.erethon.daedalus.packets;
+
+import net.minecraft.core.component.DataComponents;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.item.component.DyedItemColor;
+import org.bukkit.Color;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared item stacks for bone display entities. A bone's item only depends on its model and tint,
+ * so every bone of every model instance with the same model and colour points at the same stack.
+ * The stacks are handed to the entity data directly and must never be modified.
+ */
+public class BoneItemCache {
+
+    private static final Map<String, Map<Integer, ItemStack>> ITEMS = new ConcurrentHashMap<>();
+
+    /**
+     * Colours of the damage tint, ramping from red back towards white over 10 ticks
+     */
+    public static final Color[] DAMAGE_TINT = createDamageTint();
+
+    private BoneItemCache() {
+    }
+
+    public static ItemStack getItem(String modelID, Color color) {
+        return ITEMS.computeIfAbsent(modelID, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(color.asRGB(), rgb -> createItem(modelID, rgb));
+    }
+
+    private static ItemStack createItem(String modelID, int rgb) {
+        ItemStack item = new ItemStack(Items.LEATHER_HORSE_ARMOR);
+        item.set(DataComponents.ITEM_MODEL, ResourceLocation.parse(modelID));
+        item.set(DataComponents.DYED_COLOR, new DyedItemColor(rgb));
+        return item;
+    }
+
+    private static Color[] createDamageTint() {
+        Color[] tint = new Color[10];
+        for (int i = 0; i < tint.length; i++) {
+            int gAndB = 255 / (i + 1);
+            tint[i] = Color.fromRGB(255, gAndB, gAndB);
+        }
+        return tint;
+    }
+
+    public static void shutdown() {
+        ITEMS.clear();
+    }
+}
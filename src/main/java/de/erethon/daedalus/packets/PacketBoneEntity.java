@@ -2,12 +2,8 @@ package de.erethon.daedalus.packets;
 
 import de.erethon.daedalus.utils.DataAccessors;
 import com.mojang.math.Transformation;
-import net.minecraft.core.component.DataComponents;
-import net.minecraft.resources.ResourceLocation;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.item.ItemStack;
-import net.minecraft.world.item.Items;
-import net.minecraft.world.item.component.DyedItemColor;
 import org.bukkit.Color;
 import org.bukkit.Location;
 import org.bukkit.util.EulerAngle;
@@ -16,7 +12,10 @@ import org.joml.Vector3f;
 
 public class PacketBoneEntity extends PacketEntity {
 
-    private net.minecraft.world.item.ItemStack item;
+    private ItemStack item;
+    private String modelID;
+    private int color;
+    private int interpolationDuration = 1;
 
     public PacketBoneEntity(Location location) {
         super(EntityType.ITEM_DISPLAY, location);
@@ -30,18 +29,30 @@ public class PacketBoneEntity extends PacketEntity {
         synchedEntityData.set(DataAccessors.display_widthData, 3f); // TODO: Configurable width
         synchedEntityData.set(DataAccessors.display_heightData, 3f); // TODO: Configurable height
 
-        item = new ItemStack(Items.LEATHER_HORSE_ARMOR);
-        item.set(DataComponents.ITEM_MODEL, ResourceLocation.parse(modelID));
-        item.set(DataComponents.DYED_COLOR,new DyedItemColor(Color.WHITE.asRGB()));
+        this.modelID = modelID;
+        color = Color.WHITE.asRGB();
+        item = BoneItemCache.getItem(modelID, Color.WHITE);
 
         synchedEntityData.set(DataAccessors.itemDisplay_itemStackData, item);
         resendEntityDataForAll();
     }
 
+    /**
+     * Sets how many ticks the client takes to tween to the next transformation and position, 1 sends every tick as is
+     */
+    public void setInterpolationDuration(int ticks) {
+        if (interpolationDuration == ticks) return;
+        interpolationDuration = ticks;
+        synchedEntityData.set(DataAccessors.display_transformationInterpolationData, ticks > 1 ? ticks : 0);
+        synchedEntityData.set(DataAccessors.display_interpolationDelta, ticks > 1 ? 0 : 1);
+        synchedEntityData.set(DataAccessors.display_posRotInterpolationData, ticks);
+    }
+
     public void setHorseLeatherArmorColor(Color color) {
-        item.set(DataComponents.DYED_COLOR,new DyedItemColor(color.asRGB()));
-        synchedEntityData.set(DataAccessors.itemDisplay_itemStackData, item);
-        resendEntityDataForAll();
+        if (item == null || this.color == color.asRGB()) return;
+        this.color = color.asRGB();
+        item = BoneItemCache.getItem(modelID, color);
+        sendEntityDataValue(DataAccessors.itemDisplay_itemStackData, item);
     }
 
     public void sendLocationAndRotationPacket(Location location, EulerAngle eulerAngle) {
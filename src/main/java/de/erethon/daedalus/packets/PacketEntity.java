@@ -2,8 +2,10 @@ package de.erethon.daedalus.packets;
 
 import de.erethon.daedalus.utils.DataAccessors;
 import de.erethon.daedalus.utils.DataMappings;
+import de.erethon.daedalus.utils.EntityIdentifiers;
 import com.mojang.math.Transformation;
 import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
 import net.minecraft.network.protocol.game.ClientboundAddEntityPacket;
 import net.minecraft.network.protocol.game.ClientboundBundlePacket;
 import net.minecraft.network.protocol.game.ClientboundMoveEntityPacket;
@@ -14,20 +16,18 @@ import net.minecraft.network.syncher.EntityDataAccessor;
 import net.minecraft.network.syncher.SynchedEntityData;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.Display;
-import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.PositionMoveRotation;
 import net.minecraft.world.phys.Vec3;
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.craftbukkit.entity.CraftPlayer;
 import org.bukkit.entity.Player;
 import org.joml.Quaternionf;
 import org.joml.Vector3f;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.UUID;
 
 public class PacketEntity {
@@ -35,10 +35,13 @@ public class PacketEntity {
     protected EntityType entityType;
     protected int entityId;
     protected UUID uuid;
-    protected Set<ServerPlayer> viewers = new HashSet<>();
+    protected ViewerSet viewers = new ViewerSet();
     protected SynchedEntityData synchedEntityData;
     protected boolean isRemoved = false;
     protected EntityDataAccessor<Byte> sharedFlags;
+    // Viewers outside this range don't have the entity spawned, so they don't get its updates either
+    protected float minViewDistance = -Float.MAX_VALUE;
+    protected float maxViewDistance = Float.MAX_VALUE;
 
     double x;
     double y;
@@ -49,9 +52,9 @@ public class PacketEntity {
     public PacketEntity(EntityType entityType, Location location) {
         synchedEntityData = DataMappings.getSynchedEntityData(entityType);
         this.entityType = entityType;
-        this.entityId = Bukkit.getUnsafe().nextEntityId();
-        this.uuid = UUID.randomUUID();
-        this.sharedFlags = DataMappings.getAccessor(Entity.class, "DATA_SHARED_FLAGS_ID");
+        this.entityId = EntityIdentifiers.nextEntityId();
+        this.uuid = EntityIdentifiers.randomUUID();
+        this.sharedFlags = DataAccessors.entity_sharedFlagsData;
         this.x = location.getX();
         this.y = location.getY();
         this.z = location.getZ();
@@ -65,18 +68,26 @@ public class PacketEntity {
 
     public void addNewViewer(ServerPlayer serverPlayer) {
         viewers.add(serverPlayer);
-        ClientboundAddEntityPacket addEntityPacket = new ClientboundAddEntityPacket(entityId, uuid, x, y, z, pitch, yaw, entityType, 0, Vec3.ZERO, 0);
-        ClientboundSetEntityDataPacket entityDataPacket = null;
+        sendSpawnPacket(serverPlayer);
+    }
+
+    /**
+     * Spawns the entity client-side without touching the viewer set, for owners that manage viewers themselves.
+     */
+    public void sendSpawnPacket(ServerPlayer serverPlayer) {
+        List<Packet<? super ClientGamePacketListener>> packets = new ArrayList<>(2);
+        collectSpawnPackets(packets);
+        serverPlayer.connection.send(new ClientboundBundlePacket(packets));
+    }
+
+    /**
+     * Adds the add-entity and metadata packets to a list, so owners can bundle many entities into one send.
+     */
+    public void collectSpawnPackets(List<Packet<? super ClientGamePacketListener>> packets) {
+        packets.add(new ClientboundAddEntityPacket(entityId, uuid, x, y, z, pitch, yaw, entityType, 0, Vec3.ZERO, 0));
         if (synchedEntityData != null) {
-            entityDataPacket = new ClientboundSetEntityDataPacket(entityId, synchedEntityData.packAll());
-        }
-        if (entityDataPacket != null) {
-            ClientboundBundlePacket bundlePacket = new ClientboundBundlePacket(List.of(addEntityPacket, entityDataPacket));
-            serverPlayer.connection.send(bundlePacket);
-            return;
+            packets.add(new ClientboundSetEntityDataPacket(entityId, synchedEntityData.packAll()));
         }
-        ClientboundBundlePacket bundlePacket = new ClientboundBundlePacket(List.of(addEntityPacket));
-        serverPlayer.connection.send(bundlePacket);
     }
 
     public void hideFrom(Player player) {
@@ -84,9 +95,23 @@ public class PacketEntity {
     }
 
     public void removeViewer(ServerPlayer serverPlayer) {
+        sendRemovePacket(serverPlayer);
+        viewers.remove(serverPlayer.getUUID());
+    }
+
+    /**
+     * Removes the entity client-side without touching the viewer set, for owners that manage viewers themselves.
+     */
+    public void sendRemovePacket(ServerPlayer serverPlayer) {
         ClientboundRemoveEntitiesPacket removeEntityPacket = new ClientboundRemoveEntitiesPacket(entityId);
         serverPlayer.connection.send(removeEntityPacket);
-        viewers.remove(serverPlayer);
+    }
+
+    /**
+     * Flags the entity as removed without sending anything, for owners that despawn many entities in one packet.
+     */
+    public void markRemoved() {
+        isRemoved = true;
     }
 
     public void remove() {
@@ -103,9 +128,18 @@ public class PacketEntity {
     }
 
     public void resendEntityDataForAll() {
-        for (ServerPlayer viewer : viewers) {
-            resendEntityData(viewer);
-        }
+        if (synchedEntityData == null || viewers.isEmpty()) return;
+        sendPacketToAllViewers(new ClientboundSetEntityDataPacket(entityId, synchedEntityData.packAll()));
+    }
+
+    /**
+     * Sets a single data value and sends only that value, instead of the full entity data.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void sendEntityDataValue(EntityDataAccessor accessor, Object value) {
+        synchedEntityData.set(accessor, value);
+        if (viewers.isEmpty()) return;
+        sendPacketToAllViewers(new ClientboundSetEntityDataPacket(entityId, List.of(SynchedEntityData.DataValue.create(accessor, value))));
     }
 
     public boolean hasViewers() {
@@ -142,9 +176,8 @@ public class PacketEntity {
     }
 
     private void sendPacketToAllViewers(Packet<?> packet) {
-        for (ServerPlayer viewer : viewers) {
-            viewer.connection.send(packet);
-        }
+        if (minViewDistance == -Float.MAX_VALUE && maxViewDistance == Float.MAX_VALUE) viewers.send(packet);
+        else viewers.send(packet, minViewDistance, maxViewDistance);
     }
 
     public int getEntityId() {
@@ -155,6 +188,36 @@ public class PacketEntity {
         return entityType;
     }
 
+    public ViewerSet getViewers() {
+        return viewers;
+    }
+
+    /**
+     * Shares a viewer set with other packet entities, used by skeletons so all bones track viewers in one place.
+     */
+    public void setViewers(ViewerSet viewers) {
+        this.viewers = viewers;
+    }
+
+    public float getMinViewDistance() {
+        return minViewDistance;
+    }
+
+    public float getMaxViewDistance() {
+        return maxViewDistance;
+    }
+
+    /**
+     * Limits the level of detail distances of the viewers that get updates, whoever spawns the entity has to respect it
+     *
+     * @param minViewDistance Exclusive lower bound
+     * @param maxViewDistance Inclusive upper bound
+     */
+    public void setViewDistanceRange(float minViewDistance, float maxViewDistance) {
+        this.minViewDistance = minViewDistance;
+        this.maxViewDistance = maxViewDistance;
+    }
+
     public SynchedEntityData getSynchedEntityData() {
         return synchedEntityData;
     }
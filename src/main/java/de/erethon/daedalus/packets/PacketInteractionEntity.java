@@ -0,0 +1,40 @@
+package de.erethon.daedalus.packets;
+
+import de.erethon.daedalus.utils.DataAccessors;
+import net.minecraft.world.entity.EntityType;
+import org.bukkit.Location;
+
+/**
+ * Packet-only interaction entity, an invisible box the client can hit and click like a real entity
+ */
+public class PacketInteractionEntity extends PacketEntity {
+
+    private float width = 1;
+    private float height = 1;
+
+    public PacketInteractionEntity(Location location) {
+        super(EntityType.INTERACTION, location);
+    }
+
+    /**
+     * Resizes the box, only sends the values that changed
+     */
+    public void setSize(float width, float height) {
+        if (width != this.width) {
+            this.width = width;
+            sendEntityDataValue(DataAccessors.interaction_widthData, width);
+        }
+        if (height != this.height) {
+            this.height = height;
+            sendEntityDataValue(DataAccessors.interaction_heightData, height);
+        }
+    }
+
+    public float getWidth() {
+        return width;
+    }
+
+    public float getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,124 @@
+package de.erethon.daedalus.packets;
+
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent set of players that currently have a group of packet entities spawned client-side.
+ * A skeleton shares a single instance between all of its bones, so membership is tracked once per model
+ * instead of once per bone. Iteration is weakly consistent and never copies, which makes it safe to
+ * send packets from the worker threads while the main thread adds or removes viewers.
+ * Every viewer also has a level of detail distance, entities that shouldn't be visible that far away skip the viewer.
+ */
+public class ViewerSet {
+
+    private final ConcurrentHashMap<UUID, Viewer> viewers = new ConcurrentHashMap<>();
+
+    private static final class Viewer {
+        private final ServerPlayer serverPlayer;
+        // Only changes in steps, so entities don't spawn and despawn on every small movement
+        private volatile float lodDistance;
+
+        private Viewer(ServerPlayer serverPlayer, float lodDistance) {
+            this.serverPlayer = serverPlayer;
+            this.lodDistance = lodDistance;
+        }
+    }
+
+    /**
+     * @return true if the player was not already a viewer
+     */
+    public boolean add(ServerPlayer serverPlayer) {
+        return add(serverPlayer, 0);
+    }
+
+    /**
+     * @param lodDistance Distance used to decide which entities the viewer gets
+     * @return true if the player was not already a viewer
+     */
+    public boolean add(ServerPlayer serverPlayer, float lodDistance) {
+        return viewers.putIfAbsent(serverPlayer.getUUID(), new Viewer(serverPlayer, lodDistance)) == null;
+    }
+
+    /**
+     * @return the removed viewer, or null if the player was not a viewer
+     */
+    public ServerPlayer remove(UUID uuid) {
+        Viewer viewer = viewers.remove(uuid);
+        return viewer == null ? null : viewer.serverPlayer;
+    }
+
+    public ServerPlayer get(UUID uuid) {
+        Viewer viewer = viewers.get(uuid);
+        return viewer == null ? null : viewer.serverPlayer;
+    }
+
+    /**
+     * @return the level of detail distance of the viewer, or -1 if the player is not a viewer
+     */
+    public float getLodDistance(UUID uuid) {
+        Viewer viewer = viewers.get(uuid);
+        return viewer == null ? -1 : viewer.lodDistance;
+    }
+
+    public void setLodDistance(UUID uuid, float lodDistance) {
+        Viewer viewer = viewers.get(uuid);
+        if (viewer != null) viewer.lodDistance = lodDistance;
+    }
+
+    public boolean contains(UUID uuid) {
+        return viewers.containsKey(uuid);
+    }
+
+    public boolean isEmpty() {
+        return viewers.isEmpty();
+    }
+
+    public int size() {
+        return viewers.size();
+    }
+
+    public void clear() {
+        viewers.clear();
+    }
+
+    /**
+     * Copy of the current viewers.
+     */
+    public List<ServerPlayer> players() {
+        List<ServerPlayer> players = new ArrayList<>(viewers.size());
+        for (Viewer viewer : viewers.values()) {
+            players.add(viewer.serverPlayer);
+        }
+        return players;
+    }
+
+    /**
+     * Live view of the viewer UUIDs, do not hold on to it.
+     */
+    public Set<UUID> uuids() {
+        return viewers.keySet();
+    }
+
+    public void send(Packet<?> packet) {
+        for (Viewer viewer : viewers.values()) {
+            viewer.serverPlayer.connection.send(packet);
+        }
+    }
+
+    /**
+     * Sends a packet only to the viewers whose level of detail distance has the entity spawned
+     */
+    public void send(Packet<?> packet, float minViewDistance, float maxViewDistance) {
+        for (Viewer viewer : viewers.values()) {
+            float lodDistance = viewer.lodDistance;
+            if (lodDistance > minViewDistance && lodDistance <= maxViewDistance) viewer.serverPlayer.connection.send(packet);
+        }
+    }
+}
@@ -2,11 +2,13 @@ package de.erethon.daedalus.utils;
 
 import net.minecraft.network.syncher.EntityDataAccessor;
 import net.minecraft.world.entity.Display;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.Interaction;
 
 // Utility class for easy access to data accessors
 @SuppressWarnings("rawtypes")
 public class DataAccessors {
+    public static EntityDataAccessor entity_sharedFlagsData = DataMappings.getAccessor(Entity.class, "DATA_SHARED_FLAGS_ID"); // Byte
     public static EntityDataAccessor display_translationData = DataMappings.getAccessor(Display.class, "DATA_TRANSLATION_ID");
     public static EntityDataAccessor display_scaleData = DataMappings.getAccessor(Display.class, "DATA_SCALE_ID");
     public static EntityDataAccessor display_leftRotationData = DataMappings.getAccessor(Display.class, "DATA_LEFT_ROTATION_ID");
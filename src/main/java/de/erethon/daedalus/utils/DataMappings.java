@@ -17,22 +17,30 @@ import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.Pose;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataMappings {
 
     public static Map<EntityType<?>, Entity> ENTITY_DATA_MAPPINGS = new HashMap<>();
     public static Map<Class<? extends Entity>, Map<String, EntityDataAccessor<?>>> DATA_ACCESSOR_MAPPINGS = new HashMap<>();
     public static Constructor<?> SET_PASSENGERS_PACKET;
+    private static final Map<EntityType<?>, EntityDataPrototype> ENTITY_DATA_PROTOTYPES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, MethodHandle> DEFINE_SYNCHED_DATA_HANDLES = new ConcurrentHashMap<>();
 
     public static void generateMappings(Level level) {
         BuiltInRegistries.ENTITY_TYPE.forEach(type -> {
@@ -176,23 +184,23 @@ public class DataMappings {
     }
 
     public static SynchedEntityData getSynchedEntityData(EntityType<?> type) {
-        if (!ENTITY_DATA_MAPPINGS.containsKey(type)) {
+        Entity entity = ENTITY_DATA_MAPPINGS.get(type);
+        if (entity == null) {
             MessageUtil.log("[Models] No entity found for type " + type.getDescriptionId());
             return null;
         }
-        Entity entity = ENTITY_DATA_MAPPINGS.get(type);
+        EntityDataPrototype prototype = ENTITY_DATA_PROTOTYPES.computeIfAbsent(type, t -> createPrototype(t, entity));
+        return prototype.create(entity);
+    }
+
+    // Runs defineSynchedData once per type, every later entity is built by copying the defaults from the prototype
+    private static EntityDataPrototype createPrototype(EntityType<?> type, Entity entity) {
         SynchedEntityData.Builder dataBuilder = new SynchedEntityData.Builder(entity);
+        // We need to use the superclass for players cause of ServerPlayer
+        Class<?> owner = entity instanceof Player ? entity.getClass().getSuperclass() : entity.getClass();
         try {
-            if (entity instanceof Player player) { // We need to use the superclass for players cause of ServerPlayer
-                Method defineSynchedData = entity.getClass().getSuperclass().getDeclaredMethod("defineSynchedData", SynchedEntityData.Builder.class);
-                defineSynchedData.setAccessible(true);
-                defineSynchedData.invoke(entity, dataBuilder);
-            } else {
-                Method defineSynchedData = entity.getClass().getDeclaredMethod("defineSynchedData", SynchedEntityData.Builder.class);
-                defineSynchedData.setAccessible(true);
-                defineSynchedData.invoke(entity, dataBuilder);
-            }
-        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            getDefineSynchedData(owner).invoke(entity, dataBuilder);
+        } catch (Throwable e) {
             MessageUtil.log("Failed to define synched data for " + type.getDescriptionId() + ": " + e.getMessage());
         }
         // Shared data
@@ -204,8 +212,53 @@ public class DataMappings {
         dataBuilder.define(getAccessor(Entity.class, "DATA_NO_GRAVITY"), false);
         dataBuilder.define(getAccessor(Entity.class, "DATA_POSE"), Pose.STANDING);
         dataBuilder.define(getAccessor(Entity.class, "DATA_TICKS_FROZEN"), 0);
-        // Build the data
-        return dataBuilder.build();
+        return new EntityDataPrototype(dataBuilder.build().packAll());
+    }
+
+    private static MethodHandle getDefineSynchedData(Class<?> owner) throws ReflectiveOperationException {
+        MethodHandle handle = DEFINE_SYNCHED_DATA_HANDLES.get(owner);
+        if (handle == null) {
+            Method defineSynchedData = owner.getDeclaredMethod("defineSynchedData", SynchedEntityData.Builder.class);
+            defineSynchedData.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(defineSynchedData);
+            DEFINE_SYNCHED_DATA_HANDLES.put(owner, handle);
+        }
+        return handle;
+    }
+
+    /**
+     * Default values of every data slot of an entity type, in id order.
+     */
+    private static final class EntityDataPrototype {
+        private final EntityDataAccessor<Object>[] accessors;
+        private final Object[] defaults;
+
+        @SuppressWarnings("unchecked")
+        private EntityDataPrototype(List<SynchedEntityData.DataValue<?>> values) {
+            accessors = new EntityDataAccessor[values.size()];
+            defaults = new Object[values.size()];
+            for (int i = 0; i < values.size(); i++) {
+                SynchedEntityData.DataValue<?> value = values.get(i);
+                accessors[i] = (EntityDataAccessor<Object>) value.serializer().createAccessor(value.id());
+                defaults[i] = value.value();
+            }
+        }
+
+        private SynchedEntityData create(Entity entity) {
+            SynchedEntityData.Builder dataBuilder = new SynchedEntityData.Builder(entity);
+            for (int i = 0; i < accessors.length; i++) {
+                dataBuilder.define(accessors[i], copyValue(defaults[i]));
+            }
+            return dataBuilder.build();
+        }
+
+        // The mutable defaults would otherwise be shared between all entities of the type
+        private static Object copyValue(Object value) {
+            if (value instanceof Vector3f vector) return new Vector3f(vector);
+            if (value instanceof Quaternionf quaternion) return new Quaternionf(quaternion);
+            if (value instanceof ItemStack itemStack) return itemStack.copy();
+            return value;
+        }
     }
 
     public static EntityDataAccessor getAccessor(Class<? extends Entity> clazz, String dataAccessor) {
@@ -0,0 +1,54 @@
+package de.erethon.daedalus.utils;
+
+import de.erethon.bedrock.chat.MessageUtil;
+import net.minecraft.world.entity.Entity;
+import org.bukkit.Bukkit;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out entity ids and UUIDs for packet entities.
+ * Ids are reserved from the server counter in blocks so spawning a large model only touches the shared counter once,
+ * and UUIDs only have to be unique per client, so they don't need to go through SecureRandom.
+ */
+public class EntityIdentifiers {
+
+    private static final int ID_BLOCK_SIZE = 256;
+    private static final AtomicInteger ENTITY_COUNTER = findEntityCounter();
+
+    private static int nextId = 0;
+    private static int blockEnd = 0;
+
+    public static synchronized int nextEntityId() {
+        if (ENTITY_COUNTER == null) {
+            return Bukkit.getUnsafe().nextEntityId();
+        }
+        if (nextId >= blockEnd) {
+            // The server uses incrementAndGet, so the ids handed out are the ones after the previous value
+            nextId = ENTITY_COUNTER.getAndAdd(ID_BLOCK_SIZE) + 1;
+            blockEnd = nextId + ID_BLOCK_SIZE;
+        }
+        return nextId++;
+    }
+
+    public static UUID randomUUID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L; // version 4
+        long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L; // IETF variant
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    private static AtomicInteger findEntityCounter() {
+        try {
+            Field field = Entity.class.getDeclaredField("ENTITY_COUNTER");
+            field.setAccessible(true);
+            return (AtomicInteger) field.get(null);
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            MessageUtil.log("[Models] Could not access the entity counter, falling back to allocating ids one by one: " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.erethon.daedalus.utils;
 
+import org.joml.Matrix3d;
 import org.joml.Matrix4d;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
@@ -148,6 +149,23 @@ public class TransformationMatrix {
         this.matrix = result;
     }
 
+    /**
+     * Extracts the rotation with the scale divided out, its columns are the local axes in world space
+     *
+     * @param dest Matrix to write into
+     * @return dest
+     */
+    public Matrix3d getRotationMatrix(Matrix3d dest) {
+        double[] scale = getScale();
+        double sx = scale[0] > 1e-9 ? scale[0] : 1;
+        double sy = scale[1] > 1e-9 ? scale[1] : 1;
+        double sz = scale[2] > 1e-9 ? scale[2] : 1;
+        return dest.set(
+                matrix[0][0] / sx, matrix[1][0] / sx, matrix[2][0] / sx,
+                matrix[0][1] / sy, matrix[1][1] / sy, matrix[2][1] / sy,
+                matrix[0][2] / sz, matrix[1][2] / sz, matrix[2][2] / sz);
+    }
+
     /**
      * Extracts a xyz position
      *